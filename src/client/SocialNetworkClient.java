@@ -1,4 +1,8 @@
 package client;
+import protocol.Frame;
+import protocol.FrameCodec;
+import protocol.FrameReader;
+import protocol.FrameWriter;
 import java.io.*;
 import java.net.*;
 import java.nio.file.*;
@@ -10,6 +14,8 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 // Client application for interacting with the social network server.
 public class SocialNetworkClient {
     private Socket socket;
@@ -20,14 +26,27 @@ public class SocialNetworkClient {
     private final int serverPort;
     private boolean running;
     private boolean loggedIn;
+    private final boolean useBinaryProtocol;
+    private FrameReader frameIn;
+    private FrameWriter frameOut;
+    private FrameCodec frameCodec;
+    private int nextRequestId;
+    private static final Set<String> PIPELINE_UNSAFE_COMMANDS = new HashSet<>(
+            java.util.Arrays.asList("upload", "download_syn", "download_ack"));
+    private static final int NOTIFICATION_PAGE_SIZE = 100;
     private String languagePreference = "en";
     private static final String SRC_FOLDER = "src";
     private static final String CLIENT_FOLDER = SRC_FOLDER + File.separator + "client";
     private static final String LOCAL_DATA_DIR = CLIENT_FOLDER + File.separator + "localdata";
     private final Map<String, Set<String>> pendingPhotoRequests = new HashMap<>();
+    private final Queue<String> pushedNotifications = new ConcurrentLinkedQueue<>();
     public SocialNetworkClient(String serverAddress, int serverPort) {
+        this(serverAddress, serverPort, false);
+    }
+    public SocialNetworkClient(String serverAddress, int serverPort, boolean useBinaryProtocol) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        this.useBinaryProtocol = useBinaryProtocol;
         this.running = false;
         this.loggedIn = false;
     }
@@ -37,12 +56,31 @@ public class SocialNetworkClient {
             out = new PrintWriter(socket.getOutputStream(), true);
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             running = true;
+            if (useBinaryProtocol) {
+                negotiateBinaryCodec();
+            }
             return true;
         } catch (IOException e) {
             System.err.println("Error connecting to server: " + e.getMessage());
             return false;
         }
     }
+    private void negotiateBinaryCodec() throws IOException {
+        out.println(FrameCodec.HANDSHAKE_COMMAND + ":" + FrameCodec.BINARY);
+        String reply = readReply();
+        if (!(FrameCodec.HANDSHAKE_REPLY + FrameCodec.BINARY).equals(reply)) {
+            System.out.println("Server does not support the binary protocol, using text protocol.");
+            return;
+        }
+        frameCodec = new FrameCodec(socket.getInputStream(), socket.getOutputStream());
+        frameIn = new FrameReader(frameCodec);
+        frameOut = new FrameWriter(frameCodec, true);
+        in = frameIn;
+        out = frameOut;
+    }
+    private boolean isBinaryProtocol() {
+        return frameOut != null;
+    }
     public void disconnect() {
         running = false;
         loggedIn = false;
@@ -153,9 +191,27 @@ public class SocialNetworkClient {
             return "Error: Not connected to server";
         }
         try {
+            if (isBinaryProtocol()) {
+                int requestId = ++nextRequestId;
+                frameOut.setRequestId(requestId);
+                out.println(command + ":" + parameters);
+                return readFramedReply(command, requestId);
+            }
             out.println(command + ":" + parameters);
+            if (command.equals("get_notifications") && !parameters.isEmpty()) {
+                String header = readReply();
+                if (header == null || !header.startsWith("NOTIFICATIONS:")) {
+                    return header;
+                }
+                StringBuilder page = new StringBuilder(header);
+                int count = Integer.parseInt(header.split(":")[1]);
+                for (int i = 0; i < count; i++) {
+                    page.append("\n").append(in.readLine());
+                }
+                return page.toString();
+            }
             if (command.equals("get_notifications")) {
-                String firstLine = in.readLine();
+                String firstLine = readReply();
                 if (firstLine.equals("No notifications.")) {
                     return firstLine;
                 }
@@ -168,7 +224,7 @@ public class SocialNetworkClient {
                 return fullResponse.toString();
             }
             else if (command.equals("access_profile")) {
-                String firstLine = in.readLine();
+                String firstLine = readReply();
                 if (firstLine.startsWith("PROFILE_START")) {
                     StringBuilder profileContent = new StringBuilder(firstLine);
                     String line;
@@ -190,13 +246,114 @@ public class SocialNetworkClient {
                 return details.toString().trim();
             }
             else {
-                return in.readLine();
+                return readReply();
             }
         } catch (IOException e) {
             System.err.println("Error sending command: " + e.getMessage());
             return "Error: " + e.getMessage();
         }
     }
+    public List<String> sendPipelined(List<String[]> commands) {
+        List<String> replies = new ArrayList<>();
+        if (!running) {
+            for (int i = 0; i < commands.size(); i++) {
+                replies.add("Error: Not connected to server");
+            }
+            return replies;
+        }
+        if (!isBinaryProtocol()) {
+            for (String[] command : commands) {
+                replies.add(sendCommand(command[0], command[1]));
+            }
+            return replies;
+        }
+        for (String[] command : commands) {
+            if (PIPELINE_UNSAFE_COMMANDS.contains(command[0])) {
+                throw new IllegalArgumentException("Command " + command[0] + " cannot be pipelined");
+            }
+        }
+        Map<Integer, Integer> indexByRequestId = new HashMap<>();
+        String[] ordered = new String[commands.size()];
+        try {
+            for (int i = 0; i < commands.size(); i++) {
+                int requestId = ++nextRequestId;
+                indexByRequestId.put(requestId, i);
+                frameCodec.write(Frame.text(requestId, commands.get(i)[0] + ":" + commands.get(i)[1]));
+            }
+            int outstanding = commands.size();
+            while (outstanding > 0) {
+                Frame frame = frameIn.readFrame();
+                if (frame == null) {
+                    throw new IOException("Connection closed by server");
+                }
+                Integer index = indexByRequestId.remove(frame.getRequestId());
+                if (index == null) {
+                    continue;
+                }
+                ordered[index] = renderFramedReply(commands.get(index)[0], frame);
+                outstanding--;
+            }
+        } catch (IOException e) {
+            System.err.println("Error sending pipelined commands: " + e.getMessage());
+            for (int i = 0; i < ordered.length; i++) {
+                if (ordered[i] == null) {
+                    ordered[i] = "Error: " + e.getMessage();
+                }
+            }
+        }
+        for (String reply : ordered) {
+            replies.add(reply);
+        }
+        return replies;
+    }
+    private String readFramedReply(String command, int requestId) throws IOException {
+        Frame frame = frameIn.readFrame();
+        while (frame != null && frame.getRequestId() != requestId) {
+            frame = frameIn.readFrame();
+        }
+        if (frame == null) {
+            return "Error: Connection closed by server";
+        }
+        return renderFramedReply(command, frame);
+    }
+    private String renderFramedReply(String command, Frame frame) throws IOException {
+        if (frame.getOpcode() != Frame.LINES) {
+            return frame.asText();
+        }
+        List<String> lines = frame.asLines();
+        if (command.equals("access_profile")) {
+            StringBuilder profileContent = new StringBuilder("PROFILE_START");
+            for (String line : lines) {
+                profileContent.append("\n").append(line);
+            }
+            profileContent.append("\nPROFILE_END");
+            return profileContent.toString();
+        }
+        if (command.equals("search") && !lines.isEmpty()) {
+            return lines.get(0) + "##ENTRIES##" + String.join("##NEWLINE##", lines.subList(1, lines.size()));
+        }
+        return String.join("\n", lines);
+    }
+    private byte[] readChunkData() throws IOException {
+        if (isBinaryProtocol()) {
+            Frame frame = frameIn.readFrame();
+            if (frame == null || frame.getOpcode() != Frame.BYTES) {
+                throw new IOException("Expected chunk data frame");
+            }
+            return frame.getPayload();
+        }
+        return Base64.getDecoder().decode(in.readLine());
+    }
+    private String readReply() throws IOException {
+        String line = in.readLine();
+        while (line != null && (line.startsWith("QUEUED:") || line.equals("ADMITTED"))) {
+            if (line.startsWith("QUEUED:")) {
+                System.out.println("Server is busy, waiting for a free slot (" + line.substring(7) + ")...");
+            }
+            line = in.readLine();
+        }
+        return line;
+    }
     private void displayMenu() {
         System.out.println("\n===== Social Network Menu =====");
         System.out.println("1. Post a message");
@@ -208,8 +365,9 @@ public class SocialNetworkClient {
         System.out.println("7. View my reposts");
         System.out.println("8. Search for a photo (with language filter)");
         System.out.println("9. Set language preference");
-        System.out.println("10. Display help");
-        System.out.println("11. Exit");
+        System.out.println("10. Share photos");
+        System.out.println("11. Display help");
+        System.out.println("12. Exit");
         System.out.println("=============================");
         System.out.print("Choose an option: ");
     }
@@ -225,6 +383,9 @@ public class SocialNetworkClient {
         System.out.println("  search <filename>:<en|gr> - Search for a photo with description language");
         System.out.println("  view_reposts             - View your reposted content");
         System.out.println("  set_language <en|gr>     - Set preferred language");
+        System.out.println("  share_photos <file|*>:<user|followers|group>:<name>[:minutes] - Share photos in bulk");
+        System.out.println("  group_add <group>:<id,id...> - Add clients to one of your sharing groups");
+        System.out.println("  group_remove <group>:<id> - Remove a client from one of your sharing groups");
         System.out.println("  help                     - Display this help message");
         System.out.println("  exit                     - Disconnect and exit");
         System.out.println("============================");
@@ -238,9 +399,11 @@ public class SocialNetworkClient {
             disconnect();
             return;
         }
+        subscribeToNotifications();
         processNotificationsForFollows();
         Scanner scanner = new Scanner(System.in);
         while (running && loggedIn) {
+            processPushedNotifications();
             displayMenu();
             String choice = scanner.nextLine();
             switch (choice) {
@@ -306,7 +469,7 @@ public class SocialNetworkClient {
                     uploadPhoto(scanner);
                     break;
                 case "5": 
-                    response = sendCommand("get_notifications", "");
+                    response = fetchNotifications();
                     System.out.println("\n===== Your Notifications =====");
                     if (response.equals("No notifications.")) {
                         System.out.println(response);
@@ -605,7 +768,15 @@ public class SocialNetworkClient {
                         System.out.print("Permit access? (y/n): ");
                         String ans = scanner.nextLine().trim().toLowerCase();
                         String decision = ans.equals("y") ? "yes" : "no";
-                        response = sendCommand("permit_photo", requester + ":" + file + ":" + decision);
+                        String parameters = requester + ":" + file + ":" + decision;
+                        if (decision.equals("yes")) {
+                            System.out.print("Access duration in minutes (Enter for default): ");
+                            String minutes = scanner.nextLine().trim();
+                            if (!minutes.isEmpty()) {
+                                parameters += ":" + minutes;
+                            }
+                        }
+                        response = sendCommand("permit_photo", parameters);
                         System.out.println(response);
                     }
                     break;
@@ -622,9 +793,12 @@ public class SocialNetworkClient {
                     setLanguagePreference(scanner);
                     break;
                 case "10":
-                    displayHelp();
+                    sharePhotos(scanner);
                     break;
                 case "11":
+                    displayHelp();
+                    break;
+                case "12":
                     disconnect();
                     break;
                 default:
@@ -662,6 +836,41 @@ public class SocialNetworkClient {
             System.out.println("\nUnexpected response from server: " + response);
         }
     }
+    private void sharePhotos(Scanner scanner) {
+        System.out.println("\n===== Share Photos =====");
+        System.out.print("Photo filename to share (* for all your photos): ");
+        String target = scanner.nextLine().trim();
+        if (target.isEmpty()) {
+            System.out.println("Error: Filename cannot be empty.");
+            return;
+        }
+        System.out.print("Share with (user/followers/group): ");
+        String audience = scanner.nextLine().trim().toLowerCase();
+        String name = "";
+        if (audience.equals("user")) {
+            System.out.print("Client ID: ");
+            name = scanner.nextLine().trim();
+        } else if (audience.equals("group")) {
+            System.out.print("Group name: ");
+            name = scanner.nextLine().trim();
+            System.out.print("Add members to " + name + " first (comma-separated IDs, Enter to skip): ");
+            String members = scanner.nextLine().trim();
+            if (!members.isEmpty()) {
+                String response = sendCommand("group_add", name + ":" + members);
+                System.out.println(response);
+                if (!response.startsWith("SUCCESS:")) {
+                    return;
+                }
+            }
+        } else if (!audience.equals("followers")) {
+            System.out.println("Invalid choice. Use user, followers or group.");
+            return;
+        }
+        System.out.print("Access duration in minutes (Enter for default): ");
+        String minutes = scanner.nextLine().trim();
+        String parameters = target + ":" + audience + ":" + name + (minutes.isEmpty() ? "" : ":" + minutes);
+        System.out.println(sendCommand("share_photos", parameters));
+    }
     private void searchPhoto(Scanner scanner) {
         System.out.println("\n===== Search for a Photo =====");
         System.out.println("This will search for photos among users you follow in your social graph.");
@@ -836,7 +1045,7 @@ public class SocialNetworkClient {
                 int chunkNumber = Integer.parseInt(parts[0]);
                 int totalChunks = Integer.parseInt(parts[1]);
                 int chunkSize = Integer.parseInt(parts[2]);
-                String encodedData = in.readLine();
+                byte[] chunkData = readChunkData();
                 if (chunkNumber == 3) {
                     System.out.println("Received chunk " + chunkNumber + "/" + totalChunks +
                             " (" + chunkSize + " bytes) - Purposely not sending ACK");
@@ -852,11 +1061,10 @@ public class SocialNetworkClient {
                                 ", got chunk " + resendChunkNumber);
                         return;
                     }
-                    String resendData = in.readLine();
+                    chunkData = readChunkData();
                     System.out.println("Received resent chunk " + chunkNumber + "/" + totalChunks +
                             " - Now sending ACK");
                     out.println("CHUNK_ACK:" + chunkNumber);
-                    encodedData = resendData;
                 }
                 else if (chunkNumber == 6) {
                     System.out.println("Received chunk " + chunkNumber + "/" + totalChunks +
@@ -881,7 +1089,6 @@ public class SocialNetworkClient {
                             " (" + chunkSize + " bytes) - Sending ACK");
                     out.println("CHUNK_ACK:" + chunkNumber);
                 }
-                byte[] chunkData = Base64.getDecoder().decode(encodedData);
                 photoData.write(chunkData);
             }
             String descriptionInfo = in.readLine();
@@ -981,15 +1188,24 @@ public class SocialNetworkClient {
                 byte[] buffer = new byte[(int) photoFile.length()];
                 fis.read(buffer);
                 fis.close();
-                out.println(photoFile.length());
-                response = in.readLine();
-                if (!response.equals("START_SENDING")) {
-                    System.out.println("Error: Server not ready to receive data: " + response);
-                    return;
+                if (isBinaryProtocol()) {
+                    response = in.readLine();
+                    if (!response.equals("START_SENDING")) {
+                        System.out.println("Error: Server not ready to receive data: " + response);
+                        return;
+                    }
+                    frameOut.writeBytes(buffer);
+                } else {
+                    out.println(photoFile.length());
+                    response = in.readLine();
+                    if (!response.equals("START_SENDING")) {
+                        System.out.println("Error: Server not ready to receive data: " + response);
+                        return;
+                    }
+                    OutputStream outputStream = socket.getOutputStream();
+                    outputStream.write(buffer);
+                    outputStream.flush();
                 }
-                OutputStream outputStream = socket.getOutputStream();
-                outputStream.write(buffer);
-                outputStream.flush();
                 System.out.println("Sent " + buffer.length + " bytes to server, waiting for response...");
                 response = in.readLine();
                 if (response.startsWith("SUCCESS:")) {
@@ -1143,13 +1359,58 @@ public class SocialNetworkClient {
         }
     }
     private void processNotificationsForFollows() {
-        String response = sendCommand("get_notifications", "");
+        String response = fetchNotifications();
         if (response.equals("No notifications.")) {
             return;
         }
         String[] notifications = response.split("\\n");
         processFollowNotifications(notifications);
     }
+    public String fetchNotifications() {
+        List<String> notifications = new ArrayList<>();
+        long cursor = 0;
+        while (true) {
+            String page = sendCommand("get_notifications", cursor + ":" + NOTIFICATION_PAGE_SIZE);
+            String[] lines = page.split("\n");
+            String[] header = lines[0].split(":");
+            if (header.length != 4 || !header[0].equals("NOTIFICATIONS")) {
+                return page;
+            }
+            for (int i = 1; i < lines.length; i++) {
+                notifications.add(lines[i]);
+            }
+            cursor = Long.parseLong(header[2]);
+            if (!header[3].equals("more")) {
+                break;
+            }
+        }
+        if (notifications.isEmpty()) {
+            return "No notifications.";
+        }
+        sendCommand("ack_notifications", String.valueOf(cursor));
+        return String.join("\n", notifications);
+    }
+    public boolean subscribeToNotifications() {
+        if (!isBinaryProtocol()) {
+            return false;
+        }
+        frameIn.dispatchPushes(frame -> {
+            String notification = frame.asText();
+            pushedNotifications.add(notification);
+            System.out.println("\n[New notification] " + notification);
+        });
+        return sendCommand("subscribe", "notifications").startsWith("SUBSCRIBED");
+    }
+    private void processPushedNotifications() {
+        List<String> notifications = new ArrayList<>();
+        String notification;
+        while ((notification = pushedNotifications.poll()) != null) {
+            notifications.add(notification);
+        }
+        if (!notifications.isEmpty()) {
+            processFollowNotifications(notifications.toArray(new String[0]));
+        }
+    }
     private void requestServerSync() {
         System.out.println("Requesting data synchronization from server...");
         String response = sendCommand("sync", clientID);
@@ -1214,6 +1475,7 @@ public class SocialNetworkClient {
         Scanner scanner = new Scanner(System.in);
         String serverAddress = "localhost"; 
         int serverPort = 8000; 
+        boolean useBinaryProtocol = args.length >= 3 && args[2].equalsIgnoreCase(FrameCodec.BINARY);
         if (args.length >= 2) {
             serverAddress = args[0];
             try {
@@ -1238,7 +1500,7 @@ public class SocialNetworkClient {
             }
         }
         System.out.println("Connecting to server at " + serverAddress + ":" + serverPort);
-        SocialNetworkClient client = new SocialNetworkClient(serverAddress, serverPort);
+        SocialNetworkClient client = new SocialNetworkClient(serverAddress, serverPort, useBinaryProtocol);
         client.start();
     }
 }
\ No newline at end of file
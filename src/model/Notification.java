@@ -1,27 +1,60 @@
 package model;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 // Represents a notification exchanged in the system.
 public class Notification {
-    private String senderID;
-    private String receiverID;
-    private String type;
-    private String content;
-    private LocalDateTime timestamp;
-    private boolean isRead;
-    private String status; 
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final class Rendering {
+        private final NotificationStatus status;
+        private final int count;
+        private final String text;
+        Rendering(NotificationStatus status, int count, String text) {
+            this.status = status;
+            this.count = count;
+            this.text = text;
+        }
+    }
+    private final String senderID;
+    private final String receiverID;
+    private final NotificationType type;
+    private final String content;
+    private final String subject;
+    private final long timestampMillis;
+    private volatile long lastSeenMillis;
+    private long id;
+    private volatile int count = 1;
+    private volatile boolean isRead;
+    private volatile NotificationStatus status;
+    private volatile Rendering rendering;
     public Notification(String senderID, String receiverID, String type, String content) {
-        this.senderID = senderID;
-        this.receiverID = receiverID;
+        this(senderID, receiverID, NotificationType.fromWireName(type), content, "");
+    }
+    public Notification(String senderID, String receiverID, String type, String content, String subject) {
+        this(senderID, receiverID, NotificationType.fromWireName(type), content, subject);
+    }
+    public Notification(String senderID, String receiverID, NotificationType type, String content, String subject) {
+        this(senderID, receiverID, type, content, subject, System.currentTimeMillis(),
+                type.isRequest() ? NotificationStatus.PENDING : NotificationStatus.NONE, false);
+    }
+    public Notification(String senderID, String receiverID, NotificationType type, String content, String subject,
+                        long timestampMillis, NotificationStatus status, boolean isRead) {
+        this.senderID = senderID.intern();
+        this.receiverID = receiverID.intern();
         this.type = type;
         this.content = content;
-        this.timestamp = LocalDateTime.now();
-        this.isRead = false;
-        if (type.equals("follow_request") || type.equals("photo_request")) {
-            this.status = "pending";
-        } else {
-            this.status = "none";
-        }
+        this.subject = subject;
+        this.timestampMillis = timestampMillis;
+        this.lastSeenMillis = timestampMillis;
+        this.status = status;
+        this.isRead = isRead;
+    }
+    public long getId() {
+        return id;
+    }
+    public void setId(long id) {
+        this.id = id;
     }
     public String getSenderID() {
         return senderID;
@@ -30,13 +63,39 @@ public class Notification {
         return receiverID;
     }
     public String getType() {
+        return type.getWireName();
+    }
+    public NotificationType getNotificationType() {
         return type;
     }
+    public String getSubject() {
+        return subject;
+    }
     public String getContent() {
         return content;
     }
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return toDateTime(timestampMillis);
+    }
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+    public int getCount() {
+        return count;
+    }
+    public LocalDateTime getLastSeen() {
+        return toDateTime(lastSeenMillis);
+    }
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+    public void recordRepeat(long seenAtMillis) {
+        this.count++;
+        this.lastSeenMillis = seenAtMillis;
+    }
+    public void setRepeats(int count, long lastSeenMillis) {
+        this.count = count;
+        this.lastSeenMillis = lastSeenMillis;
     }
     public boolean isRead() {
         return isRead;
@@ -45,25 +104,44 @@ public class Notification {
         this.isRead = true;
     }
     public String getStatus() {
+        return status.getWireName();
+    }
+    public NotificationStatus getNotificationStatus() {
         return status;
     }
+    public boolean isPendingRequest() {
+        return type.isRequest() && status == NotificationStatus.PENDING;
+    }
     public void setStatus(String status) {
+        setStatus(NotificationStatus.fromWireName(status));
+    }
+    public void setStatus(NotificationStatus status) {
         this.status = status;
     }
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String formattedTime = timestamp.format(formatter);
+        Rendering cached = rendering;
+        NotificationStatus currentStatus = status;
+        int currentCount = count;
+        if (cached != null && cached.status == currentStatus && cached.count == currentCount) {
+            return cached.text;
+        }
+        String formattedTime = TIMESTAMP_FORMAT.format(getTimestamp());
         String result;
-        if (type.equals("follow_request") && status.equals("pending")) {
+        if (type == NotificationType.FOLLOW_REQUEST && currentStatus == NotificationStatus.PENDING) {
             result = "[" + formattedTime + "] You have a follow request from " + senderID + ": " + content;
-        } else if (type.equals("follow_request")) {
-            result = "[" + formattedTime + "] Follow request from " + senderID + " was " + status;
-        } else if (type.equals("post")) {
-            result = "[" + formattedTime + "] " + content;
+        } else if (type == NotificationType.FOLLOW_REQUEST) {
+            result = "[" + formattedTime + "] Follow request from " + senderID + " was " + currentStatus.getWireName();
         } else {
             result = "[" + formattedTime + "] " + content;
         }
+        if (currentCount > 1) {
+            result += " (" + currentCount + " times, last at " + TIMESTAMP_FORMAT.format(getLastSeen()) + ")";
+        }
+        rendering = new Rendering(currentStatus, currentCount, result);
         return result;
     }
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package model;
+// Lifecycle states of a notification, each with the name it has on the wire and in the journal; unknown names are rejected.
+public enum NotificationStatus {
+    NONE("none"),
+    PENDING("pending"),
+    ACCEPTED("accepted"),
+    REJECTED("rejected");
+    private final String wireName;
+    NotificationStatus(String wireName) {
+        this.wireName = wireName;
+    }
+    public String getWireName() {
+        return wireName;
+    }
+    public static NotificationStatus fromWireName(String wireName) {
+        for (NotificationStatus status : values()) {
+            if (status.wireName.equals(wireName)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown notification status: " + wireName);
+    }
+}
\ No newline at end of file
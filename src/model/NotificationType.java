@@ -0,0 +1,32 @@
+package model;
+// Kinds of notification, each with the name it has on the wire and in the journal; unknown names are rejected.
+public enum NotificationType {
+    FOLLOW_REQUEST("follow_request"),
+    PHOTO_REQUEST("photo_request"),
+    PHOTO_RESPONSE("photo_response"),
+    COMMENT_REQUEST("comment_request"),
+    COMMENT_RESPONSE("comment_response"),
+    POST("post"),
+    SYSTEM("system"),
+    PROFILE_VIEW("profile_view"),
+    PROFILE_DENIED("profile_denied"),
+    PHOTO_SHARE("photo_share");
+    private final String wireName;
+    NotificationType(String wireName) {
+        this.wireName = wireName;
+    }
+    public String getWireName() {
+        return wireName;
+    }
+    public boolean isRequest() {
+        return this == FOLLOW_REQUEST || this == PHOTO_REQUEST;
+    }
+    public static NotificationType fromWireName(String wireName) {
+        for (NotificationType type : values()) {
+            if (type.wireName.equals(wireName)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown notification type: " + wireName);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package protocol;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+// A single length-prefixed message of the binary wire protocol.
+public class Frame {
+    public static final byte TEXT = 1;
+    public static final byte LINES = 2;
+    public static final byte BYTES = 3;
+    public static final byte PUSH = 4;
+    public static final int PUSH_REQUEST_ID = 0;
+    private final byte opcode;
+    private final int requestId;
+    private final byte[] payload;
+    public Frame(byte opcode, int requestId, byte[] payload) {
+        this.opcode = opcode;
+        this.requestId = requestId;
+        this.payload = payload;
+    }
+    public static Frame text(int requestId, String text) {
+        return new Frame(TEXT, requestId, text.getBytes(StandardCharsets.UTF_8));
+    }
+    public static Frame push(String text) {
+        return new Frame(PUSH, PUSH_REQUEST_ID, text.getBytes(StandardCharsets.UTF_8));
+    }
+    public static Frame bytes(int requestId, byte[] data) {
+        return new Frame(BYTES, requestId, data);
+    }
+    public static Frame lines(int requestId, List<String> lines) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(buffer);
+            data.writeInt(lines.size());
+            for (String line : lines) {
+                byte[] encoded = line.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(encoded.length);
+                data.write(encoded);
+            }
+            return new Frame(LINES, requestId, buffer.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    public byte getOpcode() {
+        return opcode;
+    }
+    public int getRequestId() {
+        return requestId;
+    }
+    public byte[] getPayload() {
+        return payload;
+    }
+    public String asText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+    public List<String> asLines() throws IOException {
+        if (opcode != LINES) {
+            List<String> single = new ArrayList<>();
+            single.add(asText());
+            return single;
+        }
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = data.readInt();
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] encoded = new byte[data.readInt()];
+            data.readFully(encoded);
+            lines.add(new String(encoded, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package protocol;
+import java.io.*;
+// Reads and writes frames as [length][opcode][request id][payload] on a byte stream.
+// Pending output is flushed before a read would block, so pipelined replies leave in one write.
+public class FrameCodec {
+    public static final String HANDSHAKE_COMMAND = "codec";
+    public static final String BINARY = "binary";
+    public static final String TEXT = "text";
+    public static final String HANDSHAKE_REPLY = "CODEC_OK:";
+    public static final int HEADER_BYTES = 5;
+    public static final int MAX_FRAME_BYTES = Integer.getInteger("protocol.maxFrameBytes", 1024 * 1024);
+    public static final int MAX_BYTES_FRAME_BYTES = Integer.getInteger("protocol.maxBytesFrameBytes", 16 * 1024 * 1024);
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    public FrameCodec(InputStream input, OutputStream output) {
+        this.input = new DataInputStream(input);
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+    }
+    public Frame read() throws IOException {
+        if (input.available() == 0) {
+            flush();
+        }
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < HEADER_BYTES || length > MAX_BYTES_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte opcode = input.readByte();
+        if (length > maxFrameBytes(opcode)) {
+            throw new IOException("Invalid frame length: " + length + " for opcode " + opcode);
+        }
+        int requestId = input.readInt();
+        return new Frame(opcode, requestId, readPayload(length - HEADER_BYTES));
+    }
+    public static int maxFrameBytes(byte opcode) {
+        return opcode == Frame.BYTES ? MAX_BYTES_FRAME_BYTES : MAX_FRAME_BYTES;
+    }
+    private byte[] readPayload(int size) throws IOException {
+        if (size <= READ_CHUNK_BYTES) {
+            byte[] payload = new byte[size];
+            input.readFully(payload);
+            return payload;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(READ_CHUNK_BYTES);
+        byte[] chunk = new byte[READ_CHUNK_BYTES];
+        int remaining = size;
+        while (remaining > 0) {
+            int count = input.read(chunk, 0, Math.min(chunk.length, remaining));
+            if (count < 0) {
+                throw new EOFException("Frame ended after " + (size - remaining) + " of " + size + " payload bytes");
+            }
+            payload.write(chunk, 0, count);
+            remaining -= count;
+        }
+        return payload.toByteArray();
+    }
+    public void write(Frame frame) throws IOException {
+        synchronized (output) {
+            output.writeInt(HEADER_BYTES + frame.getPayload().length);
+            output.writeByte(frame.getOpcode());
+            output.writeInt(frame.getRequestId());
+            output.write(frame.getPayload());
+        }
+    }
+    public void flush() throws IOException {
+        synchronized (output) {
+            output.flush();
+        }
+    }
+    public void close() throws IOException {
+        input.close();
+        output.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+package protocol;
+import java.io.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+// Presents the text frames of a binary connection through the BufferedReader line API.
+public class FrameReader extends BufferedReader {
+    private static final Frame END_OF_STREAM = new Frame((byte) 0, 0, new byte[0]);
+    private final FrameCodec codec;
+    private int lastRequestId;
+    private volatile BlockingQueue<Frame> replies;
+    private volatile IOException pumpFailure;
+    public FrameReader(FrameCodec codec) {
+        super(Reader.nullReader());
+        this.codec = codec;
+    }
+    public void dispatchPushes(Consumer<Frame> listener) {
+        BlockingQueue<Frame> queue = new LinkedBlockingQueue<>();
+        Thread pump = new Thread(() -> pump(queue, listener), "frame-push-dispatch");
+        pump.setDaemon(true);
+        replies = queue;
+        pump.start();
+    }
+    private void pump(BlockingQueue<Frame> queue, Consumer<Frame> listener) {
+        try {
+            Frame frame;
+            while ((frame = codec.read()) != null) {
+                if (frame.getOpcode() == Frame.PUSH) {
+                    listener.accept(frame);
+                } else {
+                    queue.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            pumpFailure = e;
+        } finally {
+            queue.add(END_OF_STREAM);
+        }
+    }
+    public Frame readFrame() throws IOException {
+        Frame frame;
+        if (replies == null) {
+            frame = codec.read();
+        } else {
+            try {
+                frame = replies.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a reply frame");
+            }
+            if (frame == END_OF_STREAM) {
+                replies.add(END_OF_STREAM);
+                if (pumpFailure != null) {
+                    throw new IOException(pumpFailure.getMessage(), pumpFailure);
+                }
+                frame = null;
+            }
+        }
+        if (frame != null) {
+            lastRequestId = frame.getRequestId();
+        }
+        return frame;
+    }
+    public int getLastRequestId() {
+        return lastRequestId;
+    }
+    @Override
+    public String readLine() throws IOException {
+        Frame frame = readFrame();
+        if (frame == null) {
+            return null;
+        }
+        if (frame.getOpcode() != Frame.TEXT) {
+            throw new IOException("Expected a text frame but received opcode " + frame.getOpcode());
+        }
+        return frame.asText();
+    }
+    @Override
+    public void close() throws IOException {
+        codec.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package protocol;
+import java.io.*;
+import java.util.List;
+// Sends each println of a PrintWriter as one text frame of a binary connection.
+public class FrameWriter extends PrintWriter {
+    private final FrameCodec codec;
+    private final boolean autoFlush;
+    private volatile int requestId;
+    public FrameWriter(FrameCodec codec, boolean autoFlush) {
+        super(Writer.nullWriter());
+        this.codec = codec;
+        this.autoFlush = autoFlush;
+    }
+    public void setRequestId(int requestId) {
+        this.requestId = requestId;
+    }
+    public int getRequestId() {
+        return requestId;
+    }
+    public void writeFrame(Frame frame) {
+        try {
+            codec.write(frame);
+            if (autoFlush) {
+                codec.flush();
+            }
+        } catch (IOException e) {
+            setError();
+        }
+    }
+    public void writeLines(List<String> lines) {
+        writeFrame(Frame.lines(requestId, lines));
+    }
+    public void writeBytes(byte[] data) {
+        writeFrame(Frame.bytes(requestId, data));
+    }
+    @Override
+    public void println(String text) {
+        writeFrame(Frame.text(requestId, text));
+    }
+    @Override
+    public void println(Object value) {
+        println(String.valueOf(value));
+    }
+    @Override
+    public void println(long value) {
+        println(String.valueOf(value));
+    }
+    @Override
+    public void println(int value) {
+        println(String.valueOf(value));
+    }
+    @Override
+    public void println() {
+        println("");
+    }
+    @Override
+    public void flush() {
+        try {
+            codec.flush();
+        } catch (IOException e) {
+            setError();
+        }
+    }
+    @Override
+    public void close() {
+        try {
+            codec.close();
+        } catch (IOException e) {
+            setError();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package server;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+// Holds one direction of the social graph as delta-encoded compressed sparse rows plus a small mutable overlay.
+class AdjacencyStore {
+    private static final int MIN_OVERLAY_EDGES = 1024;
+    private static final int COMPACTION_RATIO = 8;
+    private int[] rowOffsets = new int[1];
+    private byte[] encoded = new byte[0];
+    private long baseEdges;
+    private int[][] additions = new int[0][];
+    private int[] additionCounts = new int[0];
+    private int[][] removals = new int[0][];
+    private int[] removalCounts = new int[0];
+    private int overlayEdges;
+    private int[] scratch = new int[64];
+    boolean contains(int row, int column) {
+        if (indexOf(additions, additionCounts, row, column) >= 0) {
+            return true;
+        }
+        if (indexOf(removals, removalCounts, row, column) >= 0) {
+            return false;
+        }
+        return baseContains(row, column);
+    }
+    boolean add(int row, int column) {
+        ensureRows(row + 1);
+        if (indexOf(additions, additionCounts, row, column) >= 0) {
+            return false;
+        }
+        int removed = indexOf(removals, removalCounts, row, column);
+        if (removed >= 0) {
+            delete(removals, removalCounts, row, removed);
+            overlayEdges--;
+            return true;
+        }
+        if (baseContains(row, column)) {
+            return false;
+        }
+        insert(additions, additionCounts, row, column);
+        overlayEdges++;
+        compactIfNeeded();
+        return true;
+    }
+    boolean remove(int row, int column) {
+        ensureRows(row + 1);
+        int added = indexOf(additions, additionCounts, row, column);
+        if (added >= 0) {
+            delete(additions, additionCounts, row, added);
+            overlayEdges--;
+            return true;
+        }
+        if (indexOf(removals, removalCounts, row, column) >= 0 || !baseContains(row, column)) {
+            return false;
+        }
+        insert(removals, removalCounts, row, column);
+        overlayEdges++;
+        compactIfNeeded();
+        return true;
+    }
+    void forEach(int row, IntConsumer action) {
+        if (row < rowOffsets.length - 1) {
+            int position = rowOffsets[row];
+            int end = rowOffsets[row + 1];
+            int value = 0;
+            while (position < end) {
+                long next = readVarint(encoded, position);
+                value += (int) (next >>> 32);
+                position = (int) next;
+                if (indexOf(removals, removalCounts, row, value) < 0) {
+                    action.accept(value);
+                }
+            }
+        }
+        if (row < additionCounts.length) {
+            int[] list = additions[row];
+            for (int i = 0; i < additionCounts[row]; i++) {
+                action.accept(list[i]);
+            }
+        }
+    }
+    private boolean baseContains(int row, int column) {
+        if (row >= rowOffsets.length - 1) {
+            return false;
+        }
+        int position = rowOffsets[row];
+        int end = rowOffsets[row + 1];
+        int value = 0;
+        while (position < end) {
+            long next = readVarint(encoded, position);
+            value += (int) (next >>> 32);
+            position = (int) next;
+            if (value >= column) {
+                return value == column;
+            }
+        }
+        return false;
+    }
+    private void compactIfNeeded() {
+        if (overlayEdges > Math.max(MIN_OVERLAY_EDGES, baseEdges / COMPACTION_RATIO)) {
+            compact();
+        }
+    }
+    void compact() {
+        int rows = additionCounts.length;
+        int[] offsets = new int[rows + 1];
+        byte[] output = new byte[encoded.length + overlayEdges * 5];
+        int length = 0;
+        long edges = 0;
+        for (int row = 0; row < rows; row++) {
+            int count = collect(row);
+            Arrays.sort(scratch, 0, count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                length = writeVarint(output, length, scratch[i] - previous);
+                previous = scratch[i];
+            }
+            edges += count;
+            offsets[row + 1] = length;
+        }
+        rowOffsets = offsets;
+        encoded = Arrays.copyOf(output, length);
+        baseEdges = edges;
+        Arrays.fill(additions, null);
+        Arrays.fill(additionCounts, 0);
+        Arrays.fill(removals, null);
+        Arrays.fill(removalCounts, 0);
+        overlayEdges = 0;
+    }
+    void writeTo(DataOutputStream out) throws IOException {
+        compact();
+        out.writeInt(rowOffsets.length - 1);
+        for (int offset : rowOffsets) {
+            out.writeInt(offset);
+        }
+        out.writeLong(baseEdges);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+    void readFrom(ByteBuffer in) {
+        int rows = in.getInt();
+        int[] offsets = new int[rows + 1];
+        in.asIntBuffer().get(offsets);
+        in.position(in.position() + offsets.length * Integer.BYTES);
+        baseEdges = in.getLong();
+        byte[] data = new byte[in.getInt()];
+        in.get(data);
+        rowOffsets = offsets;
+        encoded = data;
+        ensureRows(rows);
+    }
+    private int collect(int row) {
+        int count = 0;
+        if (row < rowOffsets.length - 1) {
+            int position = rowOffsets[row];
+            int end = rowOffsets[row + 1];
+            int value = 0;
+            while (position < end) {
+                long next = readVarint(encoded, position);
+                value += (int) (next >>> 32);
+                position = (int) next;
+                if (indexOf(removals, removalCounts, row, value) < 0) {
+                    scratch = grow(scratch, count + 1);
+                    scratch[count++] = value;
+                }
+            }
+        }
+        int[] list = additions[row];
+        for (int i = 0; i < additionCounts[row]; i++) {
+            scratch = grow(scratch, count + 1);
+            scratch[count++] = list[i];
+        }
+        return count;
+    }
+    private void ensureRows(int rows) {
+        if (rows <= additionCounts.length) {
+            return;
+        }
+        int capacity = Math.max(rows, Math.max(16, additionCounts.length * 2));
+        additions = Arrays.copyOf(additions, capacity);
+        additionCounts = Arrays.copyOf(additionCounts, capacity);
+        removals = Arrays.copyOf(removals, capacity);
+        removalCounts = Arrays.copyOf(removalCounts, capacity);
+    }
+    private static int indexOf(int[][] lists, int[] counts, int row, int column) {
+        if (row >= counts.length) {
+            return -1;
+        }
+        int[] list = lists[row];
+        for (int i = 0; i < counts[row]; i++) {
+            if (list[i] == column) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    private static void insert(int[][] lists, int[] counts, int row, int column) {
+        int[] list = lists[row] == null ? new int[4] : grow(lists[row], counts[row] + 1);
+        list[counts[row]++] = column;
+        lists[row] = list;
+    }
+    private static void delete(int[][] lists, int[] counts, int row, int index) {
+        int[] list = lists[row];
+        int last = --counts[row];
+        System.arraycopy(list, index + 1, list, index, last - index);
+        if (last == 0) {
+            lists[row] = null;
+        }
+    }
+    private static int[] grow(int[] array, int required) {
+        return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+    }
+    private static long readVarint(byte[] data, int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = data[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return ((long) value << 32) | position;
+    }
+    private static int writeVarint(byte[] data, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package server;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+// Admits new sessions up to capacity and parks the overflow in a bounded FIFO queue.
+class AdmissionQueue {
+    private static final Logger logger = Logger.getLogger(AdmissionQueue.class.getName());
+    interface AdmitAction {
+        void admit() throws IOException;
+    }
+    private static class Ticket {
+        private final Socket socket;
+        private final AdmitAction action;
+        private final long enqueuedAt;
+        Ticket(Socket socket, AdmitAction action) {
+            this.socket = socket;
+            this.action = action;
+            this.enqueuedAt = System.currentTimeMillis();
+        }
+    }
+    private final int capacity;
+    private final int maxDepth;
+    private final long maxWaitMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ServerMetrics metrics;
+    private final Deque<Ticket> waiting = new ArrayDeque<>();
+    private final AtomicLong longestWaitMillis = new AtomicLong();
+    private int activeSessions;
+    AdmissionQueue(int capacity, int maxDepth, long maxWaitMillis,
+                   ScheduledExecutorService scheduler, ServerMetrics metrics) {
+        this.capacity = capacity;
+        this.maxDepth = maxDepth;
+        this.maxWaitMillis = maxWaitMillis;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        metrics.registerGauge("admission.queue_depth", this::getQueueDepth);
+        metrics.registerGauge("admission.active_sessions", this::getActiveSessions);
+        metrics.registerGauge("admission.longest_wait_ms", longestWaitMillis::get);
+    }
+    void submit(Socket socket, AdmitAction action) {
+        Ticket ticket = new Ticket(socket, action);
+        int position;
+        synchronized (this) {
+            if (activeSessions < capacity && waiting.isEmpty()) {
+                activeSessions++;
+                position = 0;
+            } else if (waiting.size() >= maxDepth) {
+                position = -1;
+            } else {
+                waiting.addLast(ticket);
+                position = waiting.size();
+            }
+        }
+        if (position == 0) {
+            metrics.increment("admission.admitted");
+            runAdmission(ticket);
+        } else if (position < 0) {
+            metrics.increment("admission.rejected");
+            reject(socket);
+        } else {
+            metrics.increment("admission.queued");
+            send(socket, "QUEUED:position " + position);
+            logger.info("Queued client connection at position " + position);
+            scheduler.schedule(() -> expire(ticket), maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    void release() {
+        synchronized (this) {
+            activeSessions--;
+        }
+        admitWaiting();
+    }
+    private void admitWaiting() {
+        while (true) {
+            Ticket next;
+            synchronized (this) {
+                if (activeSessions >= capacity) {
+                    return;
+                }
+                next = waiting.pollFirst();
+                if (next == null) {
+                    return;
+                }
+                activeSessions++;
+            }
+            if (next.socket.isClosed()) {
+                synchronized (this) {
+                    activeSessions--;
+                }
+                continue;
+            }
+            long waited = System.currentTimeMillis() - next.enqueuedAt;
+            longestWaitMillis.accumulateAndGet(waited, Math::max);
+            metrics.add("admission.wait_ms_total", waited);
+            metrics.increment("admission.admitted");
+            metrics.increment("admission.admitted_from_queue");
+            send(next.socket, "ADMITTED");
+            runAdmission(next);
+            return;
+        }
+    }
+    synchronized long getQueueDepth() {
+        return waiting.size();
+    }
+    synchronized long getActiveSessions() {
+        return activeSessions;
+    }
+    private void expire(Ticket ticket) {
+        synchronized (this) {
+            if (!waiting.remove(ticket)) {
+                return;
+            }
+        }
+        metrics.increment("admission.timed_out");
+        metrics.add("admission.wait_ms_total", System.currentTimeMillis() - ticket.enqueuedAt);
+        reject(ticket.socket);
+    }
+    private void runAdmission(Ticket ticket) {
+        try {
+            ticket.action.admit();
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Error admitting client connection: " + e.getMessage());
+            try {
+                ticket.socket.close();
+            } catch (IOException closeError) {
+                logger.severe("Error closing client connection: " + closeError.getMessage());
+            }
+            release();
+        }
+    }
+    private void reject(Socket socket) {
+        try {
+            send(socket, "Server is at maximum capacity. Please try again later.");
+            socket.close();
+            logger.warning("Rejected client connection due to maximum capacity");
+        } catch (IOException e) {
+            logger.severe("Error rejecting client: " + e.getMessage());
+        }
+    }
+    private void send(Socket socket, String message) {
+        try {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            out.println(message);
+        } catch (IOException e) {
+            logger.warning("Unable to notify queued client: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
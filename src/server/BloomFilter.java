@@ -0,0 +1,48 @@
+package server;
+import java.util.concurrent.atomic.AtomicLongArray;
+// Lock-free probabilistic set that lets lookups for unknown ids return without touching the guarded index.
+class BloomFilter {
+    private static final int HASHES = 3;
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int MAX_BITS = 1 << 30;
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int capacity;
+    BloomFilter(int capacity) {
+        int bits = Math.min(MAX_BITS, Integer.highestOneBit(Math.max(1024, capacity * BITS_PER_ENTRY) - 1) << 1);
+        this.words = new AtomicLongArray(bits >>> 6);
+        this.mask = bits - 1;
+        this.capacity = capacity;
+    }
+    int capacity() {
+        return capacity;
+    }
+    void add(String value) {
+        int hash = value.hashCode();
+        int step = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & mask;
+            long flag = 1L << bit;
+            long word;
+            do {
+                word = words.get(bit >>> 6);
+            } while ((word & flag) == 0 && !words.compareAndSet(bit >>> 6, word, word | flag));
+        }
+    }
+    boolean mightContain(String value) {
+        int hash = value.hashCode();
+        int step = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & mask;
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 15;
+        return hash | 1;
+    }
+}
\ No newline at end of file
@@ -1,19 +1,70 @@
 package server;
 import model.Notification;
+import model.NotificationStatus;
+import model.NotificationType;
+import protocol.Frame;
+import protocol.FrameCodec;
+import protocol.FrameReader;
+import protocol.FrameWriter;
 import java.io.*;
 import java.net.*;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.logging.Logger;
+import static server.CommandRegistry.CommandClass.BULK;
+import static server.CommandRegistry.CommandClass.INTERACTIVE;
 // Handles client sessions and protocol logic.
 public class ClientHandler implements Runnable {
     private static final Logger logger = Logger.getLogger(ClientHandler.class.getName());
+    private static final int DEFAULT_NOTIFICATION_PAGE = 50;
+    private static final int MAX_NOTIFICATION_PAGE = 500;
     static {
         logger.setUseParentHandlers(true);
     }
+    private static final CommandRegistry COMMANDS = new CommandRegistry()
+            .register(FrameCodec.HANDSHAKE_COMMAND, false, INTERACTIVE, ClientHandler::handleCodecNegotiation)
+            .register("login", false, INTERACTIVE, (session, parameters) -> session.handleAuthentication("login", parameters))
+            .register("signup", false, INTERACTIVE, (session, parameters) -> session.handleAuthentication("signup", parameters))
+            .register("post", true, BULK, ClientHandler::handlePost)
+            .register("reply", true, INTERACTIVE, ClientHandler::handleReply)
+            .register("follow", true, INTERACTIVE, ClientHandler::handleFollow)
+            .register("unfollow", true, INTERACTIVE, ClientHandler::handleUnfollow)
+            .register("upload", true, BULK, ClientHandler::handleUpload)
+            .register("access_profile", true, INTERACTIVE, ClientHandler::handleAccessProfile)
+            .register("search", true, BULK, ClientHandler::handleSearch)
+            .register("sync", true, BULK, ClientHandler::handleSync)
+            .register("download", true, INTERACTIVE, ClientHandler::handleDownload)
+            .register("follow_request", true, INTERACTIVE, ClientHandler::handleFollowRequest)
+            .register("repost", true, BULK, ClientHandler::handleRepost)
+            .register("set_language", true, INTERACTIVE, ClientHandler::handleSetLanguage)
+            .register("get_notifications", true, INTERACTIVE, ClientHandler::handleGetNotifications)
+            .register("ack_notifications", true, INTERACTIVE, ClientHandler::handleAckNotifications)
+            .register("subscribe", true, INTERACTIVE, ClientHandler::handleSubscribe)
+            .register("follow_response", true, INTERACTIVE, ClientHandler::handleFollowResponse)
+            .register("download_syn", true, INTERACTIVE, ClientHandler::handleDownloadSyn)
+            .register("download_ack", true, BULK, ClientHandler::handleDownloadAck)
+            .register("ask_comment", true, INTERACTIVE, ClientHandler::handleAskComment)
+            .register("approve_comment", true, INTERACTIVE, ClientHandler::handleApproveComment)
+            .register("ask_photo", true, INTERACTIVE, ClientHandler::handleAskPhoto)
+            .register("permit_photo", true, INTERACTIVE, ClientHandler::handlePermitPhoto)
+            .register("share_photos", true, INTERACTIVE, ClientHandler::handleSharePhotos)
+            .register("group_add", true, INTERACTIVE, ClientHandler::handleGroupAdd)
+            .register("group_remove", true, INTERACTIVE, ClientHandler::handleGroupRemove)
+            .register("photo_details", true, INTERACTIVE, ClientHandler::handlePhotoDetails)
+            .register("comment", true, BULK, ClientHandler::handleComment);
     private Socket clientSocket;
+    private InputStream rawIn;
+    private OutputStream rawOut;
     private BufferedReader in;
     private PrintWriter out;
+    private FrameReader frameIn;
+    private FrameWriter frameOut;
+    private NioSession session;
+    private int commandCount;
+    private final FieldParser lineFields = new FieldParser();
+    private final FieldParser fields = new FieldParser();
+    private boolean closed;
     private String clientID;
     private SocialNetworkServer server;
     private FileManager fileManager;
@@ -22,116 +73,90 @@ public class ClientHandler implements Runnable {
     private String downloadSourceClientID;
     private String downloadSequenceNumber;
     private String languagePreference = "en";
+    private NotificationSubscriber notificationSubscriber;
     public ClientHandler(Socket socket, SocialNetworkServer server) {
         this.clientSocket = socket;
         this.server = server;
-        this.fileManager = new FileManager();
+        this.fileManager = new FileManager(server.getSocialGraph());
         this.authenticated = false;
     }
+    ClientHandler(NioSession session, SocialNetworkServer server) {
+        this(session.getChannel().socket(), server);
+        this.session = session;
+        this.rawIn = session.input;
+        this.rawOut = session.output;
+    }
     @Override
     public void run() {
         try {
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            processClientCommands();
+            open();
+            while (processNextCommand()) {
+            }
         } catch (IOException e) {
             logger.severe("Error handling client connection: " + e.getMessage());
         } finally {
             closeConnection();
         }
     }
-    private void processClientCommands() throws IOException {
-        String inputLine;
-        while ((inputLine = in.readLine()) != null) {
-            if (inputLine.equals("exit")) {
-                break;
-            }
-            String[] parts = inputLine.split(":", 2);
-            if (parts.length != 2) {
-                out.println("Error: Invalid command format");
-                continue;
-            }
-            String command = parts[0].trim();
-            String parameters = parts[1].trim();
-            if (command.equals("login") || command.equals("signup")) {
-                handleAuthentication(command, parameters);
-                continue;
-            }
-            if (!authenticated) {
-                out.println("Error: Please login or signup first");
-                continue;
-            }
-            switch (command) {
-                case "post":
-                    handlePost(parameters);
-                    break;
-                case "reply":
-                    handleReply(parameters);
-                    break;
-                case "follow":
-                    handleFollow(parameters);
-                    break;
-                case "unfollow":
-                    handleUnfollow(parameters);
-                    break;
-                case "upload":
-                    handleUpload(parameters);
-                    break;
-                case "access_profile":
-                    handleAccessProfile(parameters);
-                    break;
-                case "search":
-                    handleSearch(parameters);
-                    break;
-                case "sync":
-                    handleSync(parameters);
-                    break;
-                case "download":
-                    handleDownload(parameters);
-                    break;
-                case "follow_request":
-                    handleFollowRequest(parameters);
-                    break;
-                case "repost":
-                    handleRepost(parameters);
-                    break;
-                case "set_language":
-                    handleSetLanguage(parameters);
-                    break;
-                case "get_notifications":
-                    handleGetNotifications();
-                    break;
-                case "follow_response":
-                    handleFollowResponse(parameters);
-                    break;
-                case "download_syn":
-                    handleDownloadSyn(parameters);
-                    break;
-                case "download_ack":
-                    handleDownloadAck(parameters);
-                    break;
-                case "ask_comment":
-                    handleAskComment(parameters);
-                    break;
-                case "approve_comment":
-                    handleApproveComment(parameters);
-                    break;
-                case "ask_photo":
-                    handleAskPhoto(parameters);
-                    break;
-                case "permit_photo":
-                    handlePermitPhoto(parameters);
-                    break;
-                case "photo_details":
-                    handlePhotoDetails(parameters);
-                    break;
-                case "comment":
-                    handleComment(parameters);
-                    break;
-                default:
-                    out.println("Error: Unknown command");
-            }
+    void open() throws IOException {
+        if (rawIn == null) {
+            rawIn = clientSocket.getInputStream();
+        }
+        if (rawOut == null) {
+            rawOut = clientSocket.getOutputStream();
+        }
+        in = new BufferedReader(new InputStreamReader(rawIn));
+        out = new PrintWriter(rawOut, true);
+    }
+    boolean processNextCommand() throws IOException {
+        String inputLine = in.readLine();
+        if (inputLine == null || inputLine.equals("exit")) {
+            return false;
+        }
+        if (frameOut != null) {
+            frameOut.setRequestId(frameIn.getLastRequestId());
+        }
+        commandCount++;
+        if (lineFields.reset(inputLine, ':', 2).count() != 2) {
+            out.println("Error: Invalid command format");
+            return true;
+        }
+        CommandRegistry.Command command = COMMANDS.lookup(inputLine,
+                lineFields.trimmedStart(0), lineFields.trimmedEnd(0));
+        if (command == null || (command.requiresAuthentication() && !authenticated)) {
+            out.println(authenticated ? "Error: Unknown command" : "Error: Please login or signup first");
+            return true;
+        }
+        server.getMetrics().increment(command.getCommandClass().getMetricName());
+        command.getHandler().handle(this, lineFields.getTrimmed(1));
+        return true;
+    }
+    private void handleCodecNegotiation(String codecName) {
+        if (commandCount != 1) {
+            out.println("Error: Codec must be negotiated before any other command");
+            return;
+        }
+        if (!codecName.equals(FrameCodec.BINARY)) {
+            out.println(FrameCodec.HANDSHAKE_REPLY + FrameCodec.TEXT);
+            return;
         }
+        out.println(FrameCodec.HANDSHAKE_REPLY + FrameCodec.BINARY);
+        FrameCodec codec = new FrameCodec(rawIn, rawOut);
+        frameIn = new FrameReader(codec);
+        frameOut = new FrameWriter(codec, false);
+        in = frameIn;
+        out = frameOut;
+        if (session != null) {
+            session.useBinaryFraming();
+        }
+        logger.info("Client connection from " + clientSocket.getInetAddress().getHostAddress() +
+                " switched to the binary frame codec");
+    }
+    void flushOutput() {
+        out.flush();
+    }
+    private boolean isBinaryProtocol() {
+        return frameOut != null;
     }
     private void handleAuthentication(String command, String clientID) {
         this.clientID = clientID;
@@ -169,7 +194,7 @@ public class ClientHandler implements Runnable {
             out.println("Error: Client ID mismatch");
             return;
         }
-        boolean syncResult = ClientServerSynchronizer.synchronizeClientData(clientID);
+        boolean syncResult = ClientServerSynchronizer.synchronizeClientData(clientID, server.getSocialGraph());
         if (syncResult) {
             out.println("Data synchronized successfully");
         } else {
@@ -177,85 +202,72 @@ public class ClientHandler implements Runnable {
         }
     }
     private void handleSearch(String parameters) {
-        try {
-            if (parameters == null || parameters.trim().isEmpty()) {
-                out.println("ERROR:Please provide a valid file name to search for");
+        if (parameters == null || parameters.trim().isEmpty()) {
+            out.println("ERROR:Please provide a valid file name to search for");
+            return;
+        }
+        fields.reset(parameters, ':', 2);
+        String fileName = fields.getTrimmed(0);
+        String lang = null;
+        if (fields.count() == 2 && !fields.getTrimmed(1).isEmpty()) {
+            lang = fields.getTrimmed(1).toLowerCase();
+            if (!lang.equals("en") && !lang.equals("gr")) {
+                out.println("ERROR:Invalid language. Use 'en' or 'gr'");
                 return;
             }
-            String[] parts = parameters.split(":", 2);
-            String fileName = parts[0].trim();
-            String lang = null;
-            if (parts.length == 2 && !parts[1].trim().isEmpty()) {
-                lang = parts[1].trim().toLowerCase();
-                if (!lang.equals("en") && !lang.equals("gr")) {
-                    out.println("ERROR:Invalid language. Use 'en' or 'gr'");
-                    return;
-                }
-            }
-            logger.info("Client " + clientID + " is searching for photo: " + fileName +
-                    (lang != null ? " with language " + lang : ""));
-            List<String> following = new ArrayList<>();
-            Path socialGraphPath = Paths.get(FileManager.DATA_FOLDER, FileManager.SOCIAL_GRAPH_FILENAME);
-            if (Files.exists(socialGraphPath)) {
-                List<String> graphLines = Files.readAllLines(socialGraphPath);
-                for (String line : graphLines) {
-                    String[] lineParts = line.split("\\s+");
-                    if (lineParts.length > 0) {
-                        String lineClientID = lineParts[0];
-                        for (int i = 1; i < lineParts.length; i++) {
-                            if (lineParts[i].equals(clientID)) {
-                                following.add(lineClientID);
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-            if (following.isEmpty()) {
-                out.println("RESULT:You are not following any users. No search results.");
-                logger.info("Client " + clientID + " is not following anyone. No search results.");
-                return;
+        }
+        logger.info("Client " + clientID + " is searching for photo: " + fileName +
+                (lang != null ? " with language " + lang : ""));
+        List<String> following = server.getSocialGraph().getFollowing(clientID);
+        if (following.isEmpty()) {
+            out.println("RESULT:You are not following any users. No search results.");
+            logger.info("Client " + clientID + " is not following anyone. No search results.");
+            return;
+        }
+        logger.info("Client " + clientID + " is following: " + String.join(", ", following));
+        List<String> results = new ArrayList<>();
+        for (String followedUser : following) {
+            Path photoPath = Paths.get(FileManager.DATA_FOLDER, followedUser, "photos", fileName);
+            if (!Files.exists(photoPath)) {
+                continue;
             }
-            logger.info("Client " + clientID + " is following: " + String.join(", ", following));
-            List<String> results = new ArrayList<>();
-            for (String followedUser : following) {
-                Path photoPath = Paths.get(FileManager.DATA_FOLDER, followedUser, "photos", fileName);
-                if (!Files.exists(photoPath)) {
+            if (lang != null) {
+                String baseName = fileName.contains(".") ?
+                        fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+                Path descPath = Paths.get(FileManager.DATA_FOLDER, followedUser,
+                        "photos", baseName + "_" + lang + ".txt");
+                if (!Files.exists(descPath)) {
                     continue;
                 }
-                if (lang != null) {
-                    String baseName = fileName.contains(".") ?
-                            fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
-                    Path descPath = Paths.get(FileManager.DATA_FOLDER, followedUser,
-                            "photos", baseName + "_" + lang + ".txt");
-                    if (!Files.exists(descPath)) {
-                        continue;
-                    }
-                }
-                results.add(followedUser);
-                logger.info("Found matching photo at: " + photoPath);
             }
-            if (results.isEmpty()) {
-                out.println("RESULT:No matching photos found in your social graph.");
-                logger.info("No matching photos found for client " + clientID);
-            } else {
-                StringBuilder resultBuilder = new StringBuilder("RESULT:");
-                resultBuilder.append(results.size()).append(" result(s) found:");
-                resultBuilder.append("##ENTRIES##");
-                for (int i = 0; i < results.size(); i++) {
-                    resultBuilder.append(i + 1).append(". Client ID: ").append(results.get(i))
-                            .append(" - File: ").append(fileName);
-                    if (i < results.size() - 1) {
-                        resultBuilder.append("##NEWLINE##");
-                    }
+            results.add(followedUser);
+            logger.info("Found matching photo at: " + photoPath);
+        }
+        if (results.isEmpty()) {
+            out.println("RESULT:No matching photos found in your social graph.");
+            logger.info("No matching photos found for client " + clientID);
+        } else if (isBinaryProtocol()) {
+            List<String> entries = new ArrayList<>();
+            entries.add("RESULT:" + results.size() + " result(s) found:");
+            for (int i = 0; i < results.size(); i++) {
+                entries.add((i + 1) + ". Client ID: " + results.get(i) + " - File: " + fileName);
+            }
+            frameOut.writeLines(entries);
+            logger.info("Search results for client " + clientID + ": " + entries);
+        } else {
+            StringBuilder resultBuilder = new StringBuilder("RESULT:");
+            resultBuilder.append(results.size()).append(" result(s) found:");
+            resultBuilder.append("##ENTRIES##");
+            for (int i = 0; i < results.size(); i++) {
+                resultBuilder.append(i + 1).append(". Client ID: ").append(results.get(i))
+                        .append(" - File: ").append(fileName);
+                if (i < results.size() - 1) {
+                    resultBuilder.append("##NEWLINE##");
                 }
-                String resultString = resultBuilder.toString();
-                logger.info("Search results for client " + clientID + ": [" + resultString + "]");
-                out.println(resultString);
             }
-        } catch (IOException e) {
-            logger.severe("Error searching for photo: " + e.getMessage());
-            out.println("ERROR:Failed to search for photo: " + e.getMessage());
+            String resultString = resultBuilder.toString();
+            logger.info("Search results for client " + clientID + ": [" + resultString + "]");
+            out.println(resultString);
         }
     }
     private void handleDownloadSyn(String clientID) {
@@ -280,15 +292,15 @@ public class ClientHandler implements Runnable {
     private void handleDownloadAck(String parameters) {
         try {
             logger.info("Received DOWNLOAD_ACK from client " + this.clientID + " with parameters: " + parameters);
-            String[] parts = parameters.split(":", 3);
-            if (parts.length != 3) {
+            fields.reset(parameters, ':', 3);
+            if (fields.count() != 3) {
                 logger.warning("Invalid ACK parameters: " + parameters);
                 out.println("ERROR:Invalid ACK parameters");
                 return;
             }
-            String receivedSequence = parts[0];
-            String fileName = parts[1];
-            String sourceClientID = parts[2];
+            String receivedSequence = fields.get(0);
+            String fileName = fields.get(1);
+            String sourceClientID = fields.get(2);
             logger.info("Handshake Step 3/3: Client " + this.clientID + " sent ACK with sequence " +
                     receivedSequence + " for file " + fileName + " from client " + sourceClientID);
             if (!receivedSequence.equals(this.downloadSequenceNumber)) {
@@ -317,26 +329,20 @@ public class ClientHandler implements Runnable {
     private void handleDownload(String parameters) {
         try {
             logger.info("Received DOWNLOAD request from client " + clientID + " with parameters: " + parameters);
-            String[] parts = parameters.split(":", 2);
-            if (parts.length != 2) {
+            fields.reset(parameters, ':', 2);
+            if (fields.count() != 2) {
                 logger.warning("Invalid download parameters: " + parameters);
                 out.println("ERROR:Invalid parameters format. Expected 'fileName:sourceClientID'");
                 return;
             }
-            String fileName = parts[0].trim();
-            String sourceClientID = parts[1].trim();
+            String fileName = fields.getTrimmed(0);
+            String sourceClientID = fields.getTrimmed(1);
             logger.info("Client " + clientID + " requested to download " + fileName + " from client " + sourceClientID);
             if (!fileManager.clientExists(sourceClientID)) {
                 logger.warning("Source client " + sourceClientID + " does not exist");
                 out.println("ERROR:Source client " + sourceClientID + " does not exist");
                 return;
             }
-            boolean isFollowing = fileManager.isFollowing(clientID, sourceClientID);
-            if (!isFollowing) {
-                logger.warning("Client " + clientID + " is not following client " + sourceClientID);
-                out.println("ERROR:You are not following client " + sourceClientID);
-                return;
-            }
             Path photoPath = Paths.get(FileManager.DATA_FOLDER, sourceClientID, "photos", fileName);
             if (!Files.exists(photoPath)) {
                 logger.warning("File " + fileName + " not found in client " + sourceClientID + "'s directory");
@@ -347,7 +353,6 @@ public class ClientHandler implements Runnable {
                 out.println("ERROR:Access to " + fileName + " not permitted by " + sourceClientID);
                 return;
             }
-            server.revokePhotoAccess(sourceClientID, clientID, fileName);
             this.downloadFileName = fileName;
             this.downloadSourceClientID = sourceClientID;
             logger.info("Preparing to initiate 3-way handshake for download of " + fileName +
@@ -394,7 +399,11 @@ public class ClientHandler implements Runnable {
                 "follow_request",
                 "wants to follow you."
         );
-        server.addNotification(notification);
+        if (!server.addNotification(notification)) {
+            out.println("Error: Could not send a follow request to client " + targetID +
+                    ": one is already pending or their request inbox is full.");
+            return;
+        }
         out.println("Follow request sent to client " + targetID + ". Waiting for their response.");
         logger.info("Client " + clientID + " sent a follow request to client " + targetID);
     }
@@ -417,18 +426,22 @@ public class ClientHandler implements Runnable {
                 return;
             }
             List<String> profileContent = Files.readAllLines(profilePath);
-            StringBuilder response = new StringBuilder();
-            response.append("PROFILE_START");
-            for (String line : profileContent) {
-                response.append("\n").append(line);
+            if (isBinaryProtocol()) {
+                frameOut.writeLines(profileContent);
+            } else {
+                StringBuilder response = new StringBuilder();
+                response.append("PROFILE_START");
+                for (String line : profileContent) {
+                    response.append("\n").append(line);
+                }
+                response.append("\nPROFILE_END");
+                out.println(response.toString());
             }
-            response.append("\nPROFILE_END");
-            out.println(response.toString());
             logger.info("Client " + clientID + " accessed profile of client " + targetID);
             Notification notification = new Notification(
                     clientID,
                     targetID,
-                    "system",
+                    "profile_view",
                     clientID + " viewed your profile."
             );
             server.addNotification(notification);
@@ -443,17 +456,37 @@ public class ClientHandler implements Runnable {
         Notification notification = new Notification(
                 clientID,
                 targetID,
-                "system",
+                "profile_denied",
                 clientID + " attempted to view your profile but was denied (not following you)."
         );
         server.addNotification(notification);
     }
-    private void handleGetNotifications() {
+    private void handleGetNotifications(String parameters) {
+        if (!parameters.isEmpty()) {
+            handleGetNotificationPage(parameters);
+            return;
+        }
         List<Notification> notifications = server.getClientNotifications(clientID);
         if (notifications.isEmpty()) {
             out.println("No notifications.");
             return;
         }
+        if (isBinaryProtocol()) {
+            List<String> rendered = new ArrayList<>(notifications.size());
+            for (Notification notification : notifications) {
+                rendered.add(notification.toString());
+            }
+            frameOut.writeLines(rendered);
+            for (Notification notification : notifications) {
+                if (!notification.isRead() &&
+                        !(notification.getNotificationType() == NotificationType.FOLLOW_REQUEST &&
+                                notification.getNotificationStatus() == NotificationStatus.PENDING)) {
+                    server.markNotificationRead(notification);
+                }
+            }
+            logger.info("Client " + clientID + " retrieved " + notifications.size() + " notifications in one frame");
+            return;
+        }
         out.println(notifications.get(0).toString());
         try {
             String clientResponse = in.readLine();
@@ -461,9 +494,9 @@ public class ClientHandler implements Runnable {
                 for (int i = 1; i < notifications.size(); i++) {
                     out.println(notifications.get(i).toString());
                     if (!notifications.get(i).isRead() &&
-                            !(notifications.get(i).getType().equals("follow_request") &&
-                                    notifications.get(i).getStatus().equals("pending"))) {
-                        notifications.get(i).markAsRead();
+                            !(notifications.get(i).getNotificationType() == NotificationType.FOLLOW_REQUEST &&
+                                    notifications.get(i).getNotificationStatus() == NotificationStatus.PENDING)) {
+                        server.markNotificationRead(notifications.get(i));
                         logger.info("Marked notification as read: " + notifications.get(i).toString());
                     }
                 }
@@ -473,36 +506,83 @@ public class ClientHandler implements Runnable {
             logger.severe("Error sending notifications: " + e.getMessage());
         }
         if (!notifications.get(0).isRead() &&
-                !(notifications.get(0).getType().equals("follow_request") &&
-                        notifications.get(0).getStatus().equals("pending"))) {
-            notifications.get(0).markAsRead();
+                !(notifications.get(0).getNotificationType() == NotificationType.FOLLOW_REQUEST &&
+                        notifications.get(0).getNotificationStatus() == NotificationStatus.PENDING)) {
+            server.markNotificationRead(notifications.get(0));
             logger.info("Marked first notification as read: " + notifications.get(0).toString());
         }
         logger.info("Client " + clientID + " retrieved their notifications");
     }
-    private void handleFollowResponse(String parameters) {
-        String[] parts = parameters.split(":", 2);
-        if (parts.length != 2) {
-            out.println("Error: Invalid parameters format. Expected 'senderID:choice'");
+    private void handleSubscribe(String topic) {
+        if (!topic.equals("notifications")) {
+            out.println("Error: Unknown subscription " + topic);
             return;
         }
-        String requestorID = parts[0];
-        String choice = parts[1];
-        List<Notification> pendingRequests = server.getPendingFollowRequests(clientID);
-        boolean requestFound = false;
-        for (Notification request : pendingRequests) {
-            if (request.getSenderID().equals(requestorID)) {
-                requestFound = true;
-                break;
+        if (!isBinaryProtocol()) {
+            out.println("Error: Notification push requires the binary protocol");
+            return;
+        }
+        if (notificationSubscriber != null) {
+            server.unsubscribeNotifications(notificationSubscriber);
+        }
+        notificationSubscriber = server.subscribeNotifications(clientID, frameOut);
+        out.println("SUBSCRIBED:notifications");
+    }
+    private void handleGetNotificationPage(String parameters) {
+        fields.reset(parameters, ':', 2);
+        long since;
+        int limit;
+        try {
+            since = Long.parseLong(fields.getTrimmed(0));
+            limit = fields.count() == 2 ? Integer.parseInt(fields.getTrimmed(1)) : DEFAULT_NOTIFICATION_PAGE;
+        } catch (NumberFormatException e) {
+            out.println("Error: Invalid parameters. Expected 'sinceCursor:pageSize'");
+            return;
+        }
+        limit = Math.max(1, Math.min(limit, MAX_NOTIFICATION_PAGE));
+        List<Notification> page = server.getNotificationPage(clientID, since, limit);
+        boolean more = page.size() > limit;
+        if (more) {
+            page.remove(limit);
+        }
+        long nextCursor = page.isEmpty() ? since : page.get(page.size() - 1).getId();
+        List<String> lines = new ArrayList<>(page.size() + 1);
+        lines.add("NOTIFICATIONS:" + page.size() + ":" + nextCursor + ":" + (more ? "more" : "end"));
+        for (Notification notification : page) {
+            lines.add(notification.toString());
+        }
+        if (isBinaryProtocol()) {
+            frameOut.writeLines(lines);
+        } else {
+            for (String line : lines) {
+                out.println(line);
             }
         }
-        if (!requestFound) {
-            out.println("Error: No pending follow request from client " + requestorID);
+        logger.info("Client " + clientID + " retrieved " + page.size() + " notifications after cursor " + since);
+    }
+    private void handleAckNotifications(String cursor) {
+        long acknowledged;
+        try {
+            acknowledged = server.acknowledgeNotifications(clientID, Long.parseLong(cursor));
+        } catch (NumberFormatException e) {
+            out.println("Error: Invalid cursor " + cursor);
+            return;
+        }
+        out.println("ACKNOWLEDGED:" + acknowledged);
+    }
+    private void handleFollowResponse(String parameters) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
+            out.println("Error: Invalid parameters format. Expected 'senderID:choice'");
             return;
         }
+        String requestorID = fields.get(0);
+        String choice = fields.get(1);
         switch (choice) {
             case "1": 
-                server.updateFollowRequestStatus(requestorID, clientID, "accepted");
+                if (!resolveFollowRequest(requestorID, NotificationStatus.ACCEPTED)) {
+                    break;
+                }
                 if (fileManager.createFollowRelationship(requestorID, clientID) &&
                         fileManager.createFollowRelationship(clientID, requestorID)) {
                     Notification notification = new Notification(
@@ -520,7 +600,9 @@ public class ClientHandler implements Runnable {
                 }
                 break;
             case "2": 
-                server.updateFollowRequestStatus(requestorID, clientID, "accepted");
+                if (!resolveFollowRequest(requestorID, NotificationStatus.ACCEPTED)) {
+                    break;
+                }
                 if (fileManager.createFollowRelationship(requestorID, clientID)) {
                     Notification notification = new Notification(
                             clientID,
@@ -536,7 +618,9 @@ public class ClientHandler implements Runnable {
                 }
                 break;
             case "3": 
-                server.updateFollowRequestStatus(requestorID, clientID, "rejected");
+                if (!resolveFollowRequest(requestorID, NotificationStatus.REJECTED)) {
+                    break;
+                }
                 Notification notification = new Notification(
                         clientID,
                         requestorID,
@@ -551,16 +635,23 @@ public class ClientHandler implements Runnable {
                 out.println("Error: Invalid choice. Expected 1, 2, or 3.");
         }
     }
+    private boolean resolveFollowRequest(String requestorID, NotificationStatus status) {
+        if (server.updateFollowRequestStatus(requestorID, clientID, status)) {
+            return true;
+        }
+        out.println("Error: No pending follow request from client " + requestorID);
+        return false;
+    }
     private void handleRepost(String parameters) {
         try {
-            String[] parts = parameters.split(":", 3);
-            if (parts.length < 3) {
+            fields.reset(parameters, ':', 3);
+            if (fields.count() < 3) {
                 out.println("ERROR:Invalid parameters format. Expected 'originalSenderID:postContent:comment'");
                 return;
             }
-            String originalSenderID = parts[0].trim();
-            String originalContent = parts[1].trim();
-            String comment = parts[2].trim();
+            String originalSenderID = fields.getTrimmed(0);
+            String originalContent = fields.getTrimmed(1);
+            String comment = fields.getTrimmed(2);
             Path clientDir = Paths.get(FileManager.DATA_FOLDER, clientID);
             if (!Files.exists(clientDir)) {
                 Files.createDirectories(clientDir);
@@ -579,25 +670,16 @@ public class ClientHandler implements Runnable {
             Files.write(othersPath, (formattedRepost + System.lineSeparator() + System.lineSeparator()).getBytes(),
                     StandardOpenOption.APPEND);
             logger.info("Client " + clientID + " reposted content from " + originalSenderID);
+            out.println("SUCCESS:Repost created successfully!");
+            String authorID = clientID;
             List<String> followers = getFollowers();
             if (!followers.isEmpty()) {
-                String notificationContent = "reposted from " + originalSenderID + ": " + originalContent;
-                if (!comment.isEmpty()) {
-                    notificationContent += " with comment: " + comment;
-                }
-                for (String followerID : followers) {
-                    Notification notification = new Notification(
-                            clientID,
-                            followerID,
-                            "post",
-                            clientID + " " + notificationContent
-                    );
-                    server.addNotification(notification);
-                    logger.info("Sent repost notification to follower " + followerID);
-                }
-                logger.info("Notified " + followers.size() + " followers about repost from client " + clientID);
+                String notificationContent = authorID + " reposted from " + originalSenderID + ": " + originalContent +
+                        (comment.isEmpty() ? "" : " with comment: " + comment);
+                server.getFanOut().submit("repost by " + authorID, followers, followerID ->
+                        server.addNotification(new Notification(authorID, followerID, "post", notificationContent)));
+                logger.info("Queued repost notifications from " + authorID + " to " + followers.size() + " followers");
             }
-            out.println("SUCCESS:Repost created successfully!");
         } catch (IOException e) {
             out.println("ERROR:" + e.getMessage());
             logger.severe("Error handling repost for client " + clientID + ": " + e.getMessage());
@@ -638,14 +720,14 @@ public class ClientHandler implements Runnable {
     }
     private void handleUpload(String parameters) {
         try {
-            String[] parts = parameters.split(":", 3);
-            if (parts.length < 2) {
+            fields.reset(parameters, ':', 3);
+            if (fields.count() < 2) {
                 out.println("Error: Invalid parameters format. Expected 'filename:description_en[:description_gr]'");
                 return;
             }
-            String fileName = parts[0].trim();
-            String descriptionEn = parts[1].trim();
-            String descriptionGr = parts.length == 3 ? parts[2].trim() : "";
+            String fileName = fields.getTrimmed(0);
+            String descriptionEn = fields.getTrimmed(1);
+            String descriptionGr = fields.count() == 3 ? fields.getTrimmed(2) : "";
             if (descriptionEn.isEmpty() && descriptionGr.isEmpty()) {
                 out.println("Error: At least one description (EN or GR) must be provided");
                 return;
@@ -669,6 +751,20 @@ public class ClientHandler implements Runnable {
             Path descriptionGrPath = Paths.get(FileManager.DATA_FOLDER, clientID,
                     "photos", baseName + "_gr.txt");
             out.println("READY_FOR_PHOTO");
+            if (isBinaryProtocol()) {
+                out.println("START_SENDING");
+                Frame photoFrame = frameIn.readFrame();
+                if (photoFrame == null || photoFrame.getOpcode() != Frame.BYTES) {
+                    out.println("ERROR:Expected photo data frame");
+                    logger.severe("Client " + clientID + " did not send a photo data frame");
+                    return;
+                }
+                byte[] photoBytes = photoFrame.getPayload();
+                logger.info("Received " + photoBytes.length + " byte photo frame from client " + clientID);
+                storeUploadedPhoto(fileName, photoBytes, descriptionEn, descriptionGr,
+                        photoPath, descriptionEnPath, descriptionGrPath);
+                return;
+            }
             String fileSizeStr = in.readLine();
             if (fileSizeStr == null) {
                 logger.severe("Client " + clientID + " disconnected during upload");
@@ -686,7 +782,7 @@ public class ClientHandler implements Runnable {
             byte[] photoData = new byte[(int) fileSize];
             int bytesRead;
             int totalBytesRead = 0;
-            InputStream inputStream = clientSocket.getInputStream();
+            InputStream inputStream = rawIn;
             out.println("START_SENDING");
             byte[] buffer = new byte[8192]; 
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -702,6 +798,16 @@ public class ClientHandler implements Runnable {
                 }
             }
             photoData = baos.toByteArray();
+            storeUploadedPhoto(fileName, photoData, descriptionEn, descriptionGr,
+                    photoPath, descriptionEnPath, descriptionGrPath);
+        } catch (IOException e) {
+            out.println("ERROR:" + e.getMessage());
+            logger.severe("Error handling file upload from client " + clientID + ": " + e.getMessage());
+        }
+    }
+    private void storeUploadedPhoto(String fileName, byte[] photoData, String descriptionEn, String descriptionGr,
+                                    Path photoPath, Path descriptionEnPath, Path descriptionGrPath) {
+        try {
             Files.write(photoPath, photoData);
             if (!descriptionEn.isEmpty()) {
                 Files.write(descriptionEnPath, descriptionEn.getBytes());
@@ -718,12 +824,13 @@ public class ClientHandler implements Runnable {
             }
             Files.write(profilePath, (formattedPost + System.lineSeparator()).getBytes(),
                     StandardOpenOption.APPEND);
-            logger.info("Client " + clientID + " uploaded photo: " + fileName + " (" + totalBytesRead + " bytes)");
+            logger.info("Client " + clientID + " uploaded photo: " + fileName + " (" + photoData.length + " bytes)");
             out.println("SUCCESS:Photo and description uploaded successfully. Profile updated.");
             logger.info("About to notify followers for post: " + formattedPost);
-            notifyFollowersAboutPost(formattedPost);
+            String authorID = clientID;
             List<String> followers = getFollowers();
-            for (String followerID : followers) {
+            server.getFanOut().submit("upload of " + fileName + " by " + authorID, followers, followerID -> {
+                server.addNotification(new Notification(authorID, followerID, "post", authorID + " posted: " + formattedPost));
                 Path followerOthersPath = Paths.get(FileManager.DATA_FOLDER, followerID,
                         "Others_42" + followerID + ".txt");
                 if (!Files.exists(followerOthersPath)) {
@@ -739,7 +846,7 @@ public class ClientHandler implements Runnable {
                 Files.write(followerOthersPath,
                         (entry + System.lineSeparator()).getBytes(),
                         StandardOpenOption.APPEND);
-            }
+            });
         } catch (IOException e) {
             out.println("ERROR:" + e.getMessage());
             logger.severe("Error handling file upload from client " + clientID + ": " + e.getMessage());
@@ -869,9 +976,14 @@ public class ClientHandler implements Runnable {
         boolean acknowledged = false;
         int retries = 0;
         while (!acknowledged && retries < MAX_RETRIES) {
-            String encodedData = Base64.getEncoder().encodeToString(chunkData);
-            out.println("CHUNK:" + chunkNumber + ":" + totalChunks + ":" + encodedData.length());
-            out.println(encodedData);
+            if (isBinaryProtocol()) {
+                out.println("CHUNK:" + chunkNumber + ":" + totalChunks + ":" + chunkData.length);
+                frameOut.writeBytes(chunkData);
+            } else {
+                String encodedData = Base64.getEncoder().encodeToString(chunkData);
+                out.println("CHUNK:" + chunkNumber + ":" + totalChunks + ":" + encodedData.length());
+                out.println(encodedData);
+            }
             logger.info("Sent chunk " + chunkNumber + "/" + totalChunks + " (" + chunkData.length + " bytes)");
             if (chunkNumber == 3 && retries == 0) {
                 logger.info("Chunk 3: Expecting no ACK from client (per specification)");
@@ -932,8 +1044,17 @@ public class ClientHandler implements Runnable {
             throw new IOException("Failed to send chunk " + chunkNumber + " after " + MAX_RETRIES + " attempts");
         }
     }
-    private void closeConnection() {
+    void closeConnection() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
         try {
+            if (notificationSubscriber != null) {
+                server.unsubscribeNotifications(notificationSubscriber);
+            }
             if (clientID != null && authenticated) {
                 server.removeClientFromCatalog(clientID);
                 logger.info("Client " + clientID + " disconnected");
@@ -943,63 +1064,28 @@ public class ClientHandler implements Runnable {
             if (clientSocket != null) clientSocket.close();
         } catch (IOException e) {
             logger.severe("Error closing connection: " + e.getMessage());
+        } finally {
+            server.sessionClosed();
         }
     }
     private void notifyFollowersAboutPost(String postContent) {
-        try {
-            logger.info("Starting notification process for post: " + postContent);
-            List<String> followers = getFollowers();
-            logger.info("Found " + followers.size() + " followers for client " + clientID + ": " + String.join(", ", followers));
-            for (String followerID : followers) {
-                Notification notification = new Notification(
-                        clientID,                
-                        followerID,              
-                        "post",                  
-                        clientID + " posted: " + postContent  
-                );
-                server.addNotification(notification);
-                logger.info("Sent post notification to follower " + followerID);
-            }
-            if (!followers.isEmpty()) {
-                logger.info("Notified " + followers.size() + " followers about new post from " + clientID);
-            } else {
-                logger.info("Client " + clientID + " has no followers to notify");
-            }
-        } catch (IOException e) {
-            logger.severe("Error notifying followers about post: " + e.getMessage());
-            e.printStackTrace(); 
+        String authorID = clientID;
+        List<String> followers = getFollowers();
+        if (followers.isEmpty()) {
+            logger.info("Client " + authorID + " has no followers to notify");
+            return;
         }
+        server.getFanOut().submit("post by " + authorID, followers, followerID ->
+                server.addNotification(new Notification(authorID, followerID, "post", authorID + " posted: " + postContent)));
+        logger.info("Queued post notifications from " + authorID + " to " + followers.size() + " followers");
     }
-    private List<String> getFollowersOf(String userID) throws IOException {
-        List<String> followers = new ArrayList<>();
-        Path socialGraphPath = Paths.get(FileManager.DATA_FOLDER, FileManager.SOCIAL_GRAPH_FILENAME);
-        if (!Files.exists(socialGraphPath)) {
-            logger.warning("Social graph file does not exist: " + socialGraphPath);
-            return followers;
-        }
-        logger.info("Reading social graph file: " + socialGraphPath);
-        List<String> lines = Files.readAllLines(socialGraphPath);
-        logger.info("Social graph contains " + lines.size() + " lines");
-        for (String line : lines) {
-            logger.info("Social graph entry: " + line);
-        }
-        boolean clientFound = false;
-        for (String line : lines) {
-            String[] parts = line.split("\\s+");
-            if (parts.length > 0 && parts[0].equals(userID)) {
-                clientFound = true;
-                for (int i = 1; i < parts.length; i++) {
-                    followers.add(parts[i]);
-                }
-                break;
-            }
-        }
-        if (!clientFound) {
+    private List<String> getFollowersOf(String userID) {
+        if (!fileManager.clientExists(userID)) {
             logger.warning("Client " + userID + " not found in social graph");
         }
-        return followers;
+        return server.getSocialGraph().getFollowers(userID);
     }
-    private List<String> getFollowers() throws IOException {
+    private List<String> getFollowers() {
         return getFollowersOf(clientID);
     }
     private void loadLanguagePreference() {
@@ -1069,13 +1155,13 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
     return "";
 }
     private void handleAskComment(String parameters) {
-        String[] parts = parameters.split(":", 2);
-        if (parts.length != 2) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
             out.println("Error: Invalid parameters. Expected 'targetID:comment'");
             return;
         }
-        String targetID = parts[0].trim();
-        String comment = parts[1].trim();
+        String targetID = fields.getTrimmed(0);
+        String comment = fields.getTrimmed(1);
         if (!fileManager.clientExists(targetID)) {
             out.println("Error: Client " + targetID + " does not exist.");
             return;
@@ -1094,14 +1180,14 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
         out.println("Comment request sent to " + targetID + ".");
     }
     private void handleApproveComment(String parameters) {
-        String[] parts = parameters.split(":", 3);
-        if (parts.length < 2) {
+        fields.reset(parameters, ':', 3);
+        if (fields.count() < 2) {
             out.println("Error: Invalid parameters. Expected 'requestorID:response:comment'");
             return;
         }
-        String requestorID = parts[0].trim();
-        String response = parts[1].trim().toLowerCase();
-        String comment = parts.length == 3 ? parts[2].trim() : "";
+        String requestorID = fields.getTrimmed(0);
+        String response = fields.getTrimmed(1).toLowerCase();
+        String comment = fields.count() == 3 ? fields.getTrimmed(2) : "";
         if (!fileManager.clientExists(requestorID)) {
             out.println("Error: Client " + requestorID + " does not exist.");
             return;
@@ -1126,13 +1212,13 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
         out.println("Your response has been sent to " + requestorID + ".");
     }
     private void handleComment(String parameters) {
-        String[] parts = parameters.split(":", 2);
-        if (parts.length != 2) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
             out.println("Error: Invalid parameters. Expected 'targetID:comment'");
             return;
         }
-        String targetID = parts[0].trim();
-        String comment = parts[1].trim();
+        String targetID = fields.getTrimmed(0);
+        String comment = fields.getTrimmed(1);
         try {
             Path profilePath = Paths.get(FileManager.DATA_FOLDER, clientID, "Profile_42" + clientID);
             if (!Files.exists(profilePath)) {
@@ -1156,14 +1242,10 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
             Set<String> allFollowers = new LinkedHashSet<>(commenterFollowers);
             allFollowers.addAll(targetFollowers);
             allFollowers.add(targetID);
-            for (String followerID : allFollowers) {
-                Notification notification = new Notification(
-                        clientID,
-                        followerID,
-                        "post",
-                        clientID + " commented on " + targetID + "'s post: " + comment
-                );
-                server.addNotification(notification);
+            String authorID = clientID;
+            server.getFanOut().submit("comment by " + authorID, allFollowers, followerID -> {
+                server.addNotification(new Notification(authorID, followerID, "post",
+                        authorID + " commented on " + targetID + "'s post: " + comment));
                 Path followerOthersPath = Paths.get(FileManager.DATA_FOLDER, followerID,
                         "Others_42" + followerID + ".txt");
                 if (!Files.exists(followerOthersPath)) {
@@ -1172,7 +1254,7 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
                 Files.write(followerOthersPath,
                         (formatted + System.lineSeparator()).getBytes(),
                         StandardOpenOption.APPEND);
-            }
+            });
         } catch (IOException e) {
             out.println("Error: " + e.getMessage());
         }
@@ -1186,13 +1268,13 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
         return !hasGreek; 
     }
     private void handleAskPhoto(String parameters) {
-        String[] parts = parameters.split(":", 2);
-        if (parts.length != 2) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
             out.println("Error: Invalid parameters. Expected 'targetID:fileName'");
             return;
         }
-        String targetID = parts[0].trim();
-        String fileName = parts[1].trim();
+        String targetID = fields.getTrimmed(0);
+        String fileName = fields.getTrimmed(1);
         if (!fileManager.clientExists(targetID)) {
             out.println("Error: Client " + targetID + " does not exist.");
             return;
@@ -1206,30 +1288,27 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
                 clientID,
                 targetID,
                 "photo_request",
-                clientID + " requests access to " + fileName
+                clientID + " requests access to " + fileName,
+                fileName
         );
-        server.addNotification(notification);
+        if (!server.addNotification(notification)) {
+            out.println("Error: Could not send an access request for " + fileName + " to " + targetID +
+                    ": one is already pending or their request inbox is full.");
+            return;
+        }
         out.println("Access request sent to " + targetID + ".");
     }
     private void handlePermitPhoto(String parameters) {
-        String[] parts = parameters.split(":", 3);
-        if (parts.length < 3) {
-            out.println("Error: Invalid parameters. Expected 'requestorID:fileName:response'");
+        fields.reset(parameters, ':', 4);
+        if (fields.count() < 3) {
+            out.println("Error: Invalid parameters. Expected 'requestorID:fileName:response[:minutes]'");
             return;
         }
-        String requestorID = parts[0].trim();
-        String fileName = parts[1].trim();
-        String response = parts[2].trim().toLowerCase();
-        List<Notification> pending = server.getPendingPhotoRequests(clientID);
-        boolean found = false;
-        for (Notification n : pending) {
-            if (n.getSenderID().equals(requestorID) && n.getContent().contains(fileName)) {
-                found = true;
-                break;
-            }
-        }
-        if (!found) {
-            out.println("Error: No pending photo request from client " + requestorID + ".");
+        String requestorID = fields.getTrimmed(0);
+        String fileName = fields.getTrimmed(1);
+        String response = fields.getTrimmed(2).toLowerCase();
+        Duration ttl = parseAccessDuration(3);
+        if (ttl == null) {
             return;
         }
         if (!fileManager.clientExists(requestorID)) {
@@ -1237,14 +1316,17 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
             return;
         }
         boolean approved = response.equals("yes");
+        NotificationStatus status = approved ? NotificationStatus.ACCEPTED : NotificationStatus.REJECTED;
+        if (!server.updatePhotoRequestStatus(requestorID, clientID, fileName, status)) {
+            out.println("Error: No pending photo request from client " + requestorID + ".");
+            return;
+        }
         String content;
         if (approved) {
-            server.grantPhotoAccess(clientID, requestorID, fileName);
+            server.grantPhotoAccess(clientID, requestorID, fileName, ttl);
             content = clientID + " approved your access to " + fileName;
-            server.updatePhotoRequestStatus(requestorID, clientID, fileName, "accepted");
         } else {
             content = clientID + " denied your access to " + fileName;
-            server.updatePhotoRequestStatus(requestorID, clientID, fileName, "rejected");
         }
         Notification notification = new Notification(
                 clientID,
@@ -1255,14 +1337,124 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
         server.addNotification(notification);
         out.println("Your response has been sent to " + requestorID + ".");
     }
+    private void handleSharePhotos(String parameters) {
+        fields.reset(parameters, ':', 4);
+        if (fields.count() < 2) {
+            out.println("Error: Invalid parameters. Expected 'fileName|*:user|followers|group:name[:minutes]'");
+            return;
+        }
+        String target = fields.getTrimmed(0);
+        String audience = fields.getTrimmed(1).toLowerCase();
+        String name = fields.count() > 2 ? fields.getTrimmed(2) : "";
+        Duration ttl = parseAccessDuration(3);
+        if (ttl == null) {
+            return;
+        }
+        String fileName = target.equals("*") ? null : target;
+        if (fileName != null && !Files.exists(Paths.get(FileManager.DATA_FOLDER, clientID, "photos", fileName))) {
+            out.println("Error: Photo " + fileName + " not found.");
+            return;
+        }
+        String what = fileName == null ? "all your photos" : fileName;
+        String shared = fileName == null ? "all of their photos" : fileName;
+        List<String> recipients;
+        String summary;
+        switch (audience) {
+            case "user":
+                if (name.equals(clientID)) {
+                    out.println("Error: You already have access to your own photos.");
+                    return;
+                }
+                if (name.isEmpty() || !fileManager.clientExists(name)) {
+                    out.println("Error: Client " + name + " does not exist.");
+                    return;
+                }
+                server.grantPhotoAccess(clientID, name, fileName, ttl);
+                recipients = Collections.singletonList(name);
+                summary = name;
+                break;
+            case "followers":
+                server.grantFollowersPhotoAccess(clientID, fileName, ttl);
+                recipients = getFollowers();
+                summary = "all your followers";
+                break;
+            case "group":
+                recipients = server.grantGroupPhotoAccess(clientID, name, fileName, ttl);
+                if (recipients == null) {
+                    out.println("Error: Group " + name + " has no members.");
+                    return;
+                }
+                summary = "group " + name + " (" + recipients.size() + " members)";
+                break;
+            default:
+                out.println("Error: Unknown audience " + audience + ". Use user, followers or group.");
+                return;
+        }
+        String ownerID = clientID;
+        server.getFanOut().submit("photo share by " + ownerID, recipients, recipientID ->
+                server.addNotification(new Notification(ownerID, recipientID, NotificationType.PHOTO_SHARE,
+                        ownerID + " shared " + shared + " with you", "")));
+        out.println("SUCCESS:Shared " + what + " with " + summary + " for " + ttl.toMinutes() + " minutes");
+    }
+    private void handleGroupAdd(String parameters) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2 || fields.getTrimmed(0).isEmpty()) {
+            out.println("Error: Invalid parameters. Expected 'groupName:memberID[,memberID...]'");
+            return;
+        }
+        String groupName = fields.getTrimmed(0);
+        String[] members = fields.getTrimmed(1).split(",");
+        for (int i = 0; i < members.length; i++) {
+            members[i] = members[i].trim();
+            if (!fileManager.clientExists(members[i])) {
+                out.println("Error: Client " + members[i] + " does not exist.");
+                return;
+            }
+        }
+        int size = 0;
+        for (String memberID : members) {
+            size = server.addPhotoGroupMember(clientID, groupName, memberID);
+        }
+        out.println("SUCCESS:Group " + groupName + " now has " + size + " members");
+    }
+    private void handleGroupRemove(String parameters) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
+            out.println("Error: Invalid parameters. Expected 'groupName:memberID'");
+            return;
+        }
+        String groupName = fields.getTrimmed(0);
+        String memberID = fields.getTrimmed(1);
+        if (!server.removePhotoGroupMember(clientID, groupName, memberID)) {
+            out.println("Error: " + memberID + " is not a member of group " + groupName + ".");
+            return;
+        }
+        out.println("SUCCESS:Removed " + memberID + " from group " + groupName);
+    }
+    private Duration parseAccessDuration(int index) {
+        if (fields.count() <= index || fields.getTrimmed(index).isEmpty()) {
+            return server.getPhotoGrantTtl();
+        }
+        String minutes = fields.getTrimmed(index);
+        try {
+            Duration ttl = Duration.ofMinutes(Long.parseLong(minutes));
+            if (!ttl.isNegative() && !ttl.isZero()) {
+                return ttl;
+            }
+        } catch (NumberFormatException e) {
+            logger.warning("Client " + clientID + " sent invalid access duration " + minutes);
+        }
+        out.println("Error: Access duration must be a positive number of minutes.");
+        return null;
+    }
     private void handlePhotoDetails(String parameters) {
-        String[] parts = parameters.split(":", 2);
-        if (parts.length != 2) {
+        fields.reset(parameters, ':', 2);
+        if (fields.count() != 2) {
             out.println("ERROR:Invalid parameters. Expected 'ownerID:fileName'");
             return;
         }
-        String ownerID = parts[0].trim();
-        String fileName = parts[1].trim();
+        String ownerID = fields.getTrimmed(0);
+        String fileName = fields.getTrimmed(1);
         if (!fileManager.clientExists(ownerID)) {
             out.println("ERROR:Client " + ownerID + " does not exist.");
             return;
@@ -1294,14 +1486,20 @@ private String readDescriptionForLanguage(Path enPath, Path grPath, String lang)
             }
         } catch (IOException e) {
         }
-        out.println("Description EN: " + (descEn.isEmpty() ? "N/A" : descEn));
-        out.println("Description GR: " + (descGr.isEmpty() ? "N/A" : descGr));
+        List<String> details = new ArrayList<>();
+        details.add("Description EN: " + (descEn.isEmpty() ? "N/A" : descEn));
+        details.add("Description GR: " + (descGr.isEmpty() ? "N/A" : descGr));
         if (comments.isEmpty()) {
-            out.println("No comments found.");
+            details.add("No comments found.");
         } else {
-            for (String c : comments) {
-                out.println(c);
-            }
+            details.addAll(comments);
+        }
+        if (isBinaryProtocol()) {
+            frameOut.writeLines(details);
+            return;
+        }
+        for (String line : details) {
+            out.println(line);
         }
         out.println("PHOTO_DETAILS_END");
     }
@@ -2,7 +2,6 @@ package server;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-import static server.FileManager.SOCIAL_GRAPH_FILENAME;
 // Synchronizes local client data with the server.
 public class ClientServerSynchronizer {
     private static final String SRC_FOLDER = "src";
@@ -11,12 +10,20 @@ public class ClientServerSynchronizer {
     private static final String LOCAL_DATA_DIR = CLIENT_FOLDER + File.separator + "localdata";
     private static final int TEAM_NUMBER = 42;
     public static boolean synchronizeClientData(String clientID) {
+        try {
+            return synchronizeClientData(clientID, SocialGraphIndex.load(Paths.get(DATA_FOLDER)));
+        } catch (IOException e) {
+            System.err.println("Error loading social graph for client " + clientID + ": " + e.getMessage());
+            return false;
+        }
+    }
+    public static boolean synchronizeClientData(String clientID, SocialGraphIndex socialGraph) {
         try {
             System.out.println("Starting data synchronization for client " + clientID);
             createLocalDirectories(clientID);
             synchronizeProfileFile(clientID);
             synchronizePhotosDirectory(clientID);
-            synchronizeSocialGraph(clientID);
+            synchronizeSocialGraph(clientID, socialGraph);
             synchronizeRepostsFile(clientID);
             System.out.println("Synchronization completed successfully for client " + clientID);
             return true;
@@ -118,32 +125,13 @@ public class ClientServerSynchronizer {
         }
         System.out.println("Photos directory synchronized for client " + clientID);
     }
-    private static void synchronizeSocialGraph(String clientID) throws IOException {
-        Path socialGraphPath = Paths.get(DATA_FOLDER, SOCIAL_GRAPH_FILENAME);
-        if (!Files.exists(socialGraphPath)) {
-            System.out.println("Social graph file not found. Cannot synchronize social relationships.");
+    private static void synchronizeSocialGraph(String clientID, SocialGraphIndex socialGraph) throws IOException {
+        if (!socialGraph.containsUser(clientID)) {
+            System.out.println("Client " + clientID + " not found in social graph. Cannot synchronize social relationships.");
             return;
         }
-        List<String> followers = new ArrayList<>();
-        List<String> following = new ArrayList<>();
-        List<String> lines = Files.readAllLines(socialGraphPath);
-        for (String line : lines) {
-            String[] parts = line.split("\\s+");
-            if (parts.length > 0) {
-                String user = parts[0];
-                for (int i = 1; i < parts.length; i++) {
-                    if (parts[i].equals(clientID)) {
-                        following.add(user);
-                        break;
-                    }
-                }
-                if (user.equals(clientID)) {
-                    for (int i = 1; i < parts.length; i++) {
-                        followers.add(parts[i]);
-                    }
-                }
-            }
-        }
+        List<String> followers = socialGraph.getFollowers(clientID);
+        List<String> following = socialGraph.getFollowing(clientID);
         Path followersPath = Paths.get(LOCAL_DATA_DIR, clientID, "followers.txt");
         if (!Files.exists(followersPath)) {
             Files.createFile(followersPath);
@@ -0,0 +1,6 @@
+package server;
+// Executes one protocol command for a client session.
+@FunctionalInterface
+interface CommandHandler {
+    void handle(ClientHandler session, String parameters);
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package server;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+// Table of protocol commands, looked up directly from a region of the received line.
+class CommandRegistry {
+    enum CommandClass {
+        INTERACTIVE("commands.interactive"),
+        BULK("commands.bulk");
+        private final String metricName;
+        CommandClass(String metricName) {
+            this.metricName = metricName;
+        }
+        String getMetricName() {
+            return metricName;
+        }
+    }
+    static class Command {
+        private final String name;
+        private final boolean requiresAuthentication;
+        private final CommandClass commandClass;
+        private final CommandHandler handler;
+        Command(String name, boolean requiresAuthentication, CommandClass commandClass, CommandHandler handler) {
+            this.name = name;
+            this.requiresAuthentication = requiresAuthentication;
+            this.commandClass = commandClass;
+            this.handler = handler;
+        }
+        String getName() {
+            return name;
+        }
+        boolean requiresAuthentication() {
+            return requiresAuthentication;
+        }
+        CommandClass getCommandClass() {
+            return commandClass;
+        }
+        CommandHandler getHandler() {
+            return handler;
+        }
+    }
+    private static final int INITIAL_TABLE_SIZE = 64;
+    private Command[] table = new Command[INITIAL_TABLE_SIZE];
+    private final Map<String, Command> commands = new LinkedHashMap<>();
+    CommandRegistry register(String name, boolean requiresAuthentication, CommandClass commandClass,
+                             CommandHandler handler) {
+        if (commands.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate command: " + name);
+        }
+        Command command = new Command(name, requiresAuthentication, commandClass, handler);
+        commands.put(name, command);
+        if (commands.size() > table.length / 2) {
+            Command[] resized = new Command[table.length * 2];
+            for (Command existing : commands.values()) {
+                insert(resized, existing);
+            }
+            table = resized;
+        } else {
+            insert(table, command);
+        }
+        return this;
+    }
+    Command lookup(String line, int start, int end) {
+        Command[] table = this.table;
+        int length = end - start;
+        int slot = hash(line, start, end, table.length);
+        Command candidate;
+        while ((candidate = table[slot]) != null) {
+            if (candidate.name.length() == length && line.regionMatches(start, candidate.name, 0, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return null;
+    }
+    Collection<Command> getCommands() {
+        return commands.values();
+    }
+    private static void insert(Command[] table, Command command) {
+        int slot = hash(command.name, 0, command.name.length(), table.length);
+        while (table[slot] != null) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = command;
+    }
+    private static int hash(String value, int start, int end, int tableSize) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return (hash ^ (hash >>> 16)) & (tableSize - 1);
+    }
+}
\ No newline at end of file
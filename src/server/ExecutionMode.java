@@ -0,0 +1,15 @@
+package server;
+// Selects how client sessions are mapped onto server threads.
+public enum ExecutionMode {
+    THREAD_POOL,
+    SELECTOR,
+    VIRTUAL_THREAD;
+    public static ExecutionMode fromArgument(String value) {
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown execution mode: " + value);
+    }
+}
\ No newline at end of file
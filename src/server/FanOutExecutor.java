@@ -0,0 +1,131 @@
+package server;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+// Delivers a post's side effects to every recipient off the author's session, one ordered lane per recipient.
+class FanOutExecutor {
+    private static final Logger logger = Logger.getLogger(FanOutExecutor.class.getName());
+    interface Delivery {
+        void deliver(String recipientID) throws IOException;
+    }
+    private static class Batch implements Runnable {
+        private final String description;
+        private final List<String> recipients;
+        private final Delivery delivery;
+        private final long enqueuedAt;
+        private final ServerMetrics metrics;
+        Batch(String description, List<String> recipients, Delivery delivery, ServerMetrics metrics) {
+            this.description = description;
+            this.recipients = recipients;
+            this.delivery = delivery;
+            this.metrics = metrics;
+            this.enqueuedAt = System.currentTimeMillis();
+        }
+        @Override
+        public void run() {
+            int failures = 0;
+            for (String recipientID : recipients) {
+                try {
+                    delivery.deliver(recipientID);
+                } catch (IOException | RuntimeException e) {
+                    failures++;
+                    logger.warning("Fan-out of " + description + " to " + recipientID + " failed: " + e.getMessage());
+                }
+            }
+            metrics.add("fanout.deliveries", recipients.size() - failures);
+            metrics.add("fanout.failures", failures);
+            metrics.increment("fanout.batches");
+        }
+    }
+    private final ThreadPoolExecutor[] lanes;
+    private final int batchSize;
+    private final ServerMetrics metrics;
+    FanOutExecutor(int laneCount, int queueDepth, int batchSize, ServerMetrics metrics) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+        for (int i = 0; i < laneCount; i++) {
+            String name = "fanout-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueDepth), r -> {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, FanOutExecutor::waitForSpace);
+        }
+        metrics.registerGauge("fanout.backlog", this::getBacklog);
+        metrics.registerGauge("fanout.lag_ms", this::getLagMillis);
+    }
+    void submit(String description, Collection<String> recipients, Delivery delivery) {
+        List<List<String>> byLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (String recipientID : recipients) {
+            int lane = Math.floorMod(recipientID.hashCode(), lanes.length);
+            List<String> pending = byLane.get(lane);
+            pending.add(recipientID);
+            if (pending.size() == batchSize) {
+                lanes[lane].execute(new Batch(description, pending, delivery, metrics));
+                byLane.set(lane, new ArrayList<>());
+            }
+        }
+        for (int lane = 0; lane < lanes.length; lane++) {
+            if (!byLane.get(lane).isEmpty()) {
+                lanes[lane].execute(new Batch(description, byLane.get(lane), delivery, metrics));
+            }
+        }
+        metrics.increment("fanout.submissions");
+    }
+    long getBacklog() {
+        long backlog = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            backlog += lane.getQueue().size();
+        }
+        return backlog;
+    }
+    long getLagMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (ThreadPoolExecutor lane : lanes) {
+            Runnable head = lane.getQueue().peek();
+            if (head instanceof Batch) {
+                oldest = Math.min(oldest, ((Batch) head).enqueuedAt);
+            }
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warning("Fan-out lane did not drain before shutdown; " + lane.getQueue().size() + " batches dropped");
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    private static void waitForSpace(Runnable batch, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) {
+            logger.warning("Dropping fan-out batch submitted after shutdown");
+            return;
+        }
+        try {
+            BlockingQueue<Runnable> queue = lane.getQueue();
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while waiting for fan-out queue space");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package server;
+// Reusable index-based splitter for protocol lines; records field offsets instead of building arrays.
+class FieldParser {
+    private static final int MAX_FIELDS = 8;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private String text;
+    private int count;
+    FieldParser reset(String value, char separator, int limit) {
+        text = value;
+        count = 0;
+        int max = Math.min(limit, MAX_FIELDS);
+        int start = 0;
+        while (count < max - 1) {
+            int index = value.indexOf(separator, start);
+            if (index < 0) {
+                break;
+            }
+            starts[count] = start;
+            ends[count] = index;
+            count++;
+            start = index + 1;
+        }
+        starts[count] = start;
+        ends[count] = value.length();
+        count++;
+        return this;
+    }
+    int count() {
+        return count;
+    }
+    String get(int index) {
+        return text.substring(starts[index], ends[index]);
+    }
+    String getTrimmed(int index) {
+        return text.substring(trimmedStart(index), trimmedEnd(index));
+    }
+    int trimmedStart(int index) {
+        int start = starts[index];
+        while (start < ends[index] && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    int trimmedEnd(int index) {
+        int end = ends[index];
+        while (end > starts[index] && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    String text() {
+        return text;
+    }
+}
\ No newline at end of file
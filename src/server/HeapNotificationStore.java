@@ -0,0 +1,65 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+// Keeps notifications as objects in one bounded ring per recipient.
+class HeapNotificationStore implements NotificationStore {
+    private static final Logger logger = Logger.getLogger(HeapNotificationStore.class.getName());
+    private final Map<String, NotificationQueue> queues = new ConcurrentHashMap<>();
+    private final NotificationRetention retention;
+    HeapNotificationStore(NotificationRetention retention) {
+        this.retention = retention;
+    }
+    private NotificationQueue queueFor(String receiverID) {
+        return queues.computeIfAbsent(receiverID, id -> {
+            logger.info("Created new notification list for client " + id);
+            return new NotificationQueue(retention);
+        });
+    }
+    @Override
+    public Notification add(Notification notification) {
+        queueFor(notification.getReceiverID()).add(notification);
+        return notification;
+    }
+    @Override
+    public List<Notification> getActive(String clientID) {
+        NotificationQueue queue = queues.get(clientID);
+        return queue == null ? new ArrayList<>() : queue.getActive();
+    }
+    @Override
+    public List<Notification> getPage(String clientID, long since, int limit) {
+        NotificationQueue queue = queues.get(clientID);
+        return queue == null ? new ArrayList<>() : queue.getPage(since, limit);
+    }
+    @Override
+    public List<Notification> acknowledge(String clientID, long cursor) {
+        NotificationQueue queue = queues.get(clientID);
+        return queue == null ? new ArrayList<>() : queue.acknowledge(cursor);
+    }
+    @Override
+    public boolean markRead(Notification notification) {
+        return queueFor(notification.getReceiverID()).markRead(notification);
+    }
+    @Override
+    public void updateStatus(Notification notification, NotificationStatus status) {
+        queueFor(notification.getReceiverID()).updateStatus(notification, status);
+    }
+    @Override
+    public boolean recordRepeat(Notification notification, long seenAtMillis) {
+        return queueFor(notification.getReceiverID()).recordRepeat(notification, seenAtMillis);
+    }
+    @Override
+    public void forEach(Consumer<Notification> action) {
+        for (NotificationQueue queue : queues.values()) {
+            queue.forEach(action);
+        }
+    }
+    @Override
+    public void close() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,264 @@
+package server;
+import java.io.*;
+import java.net.SocketTimeoutException;
+import protocol.FrameCodec;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+// Buffers a selector-managed connection and exposes it to its handler as blocking streams.
+class NioSession {
+    private static final int MAX_INBOUND_BYTES = 1024 * 1024;
+    private static final int MAX_OUTBOUND_BYTES = 4 * 1024 * 1024;
+    private final SocketChannel channel;
+    private final SelectorFrontEnd.IoLoop loop;
+    private final Object inboundLock = new Object();
+    private final Object outboundLock = new Object();
+    private byte[] inbound = new byte[1024];
+    private int inboundStart;
+    private int inboundEnd;
+    private int scanPosition;
+    private boolean endOfStream;
+    private boolean closed;
+    private boolean scheduled;
+    private boolean readSuspended;
+    private volatile boolean binaryFraming;
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private int outboundBytes;
+    private ClientHandler handler;
+    final InputStream input = new SessionInputStream();
+    final OutputStream output = new SessionOutputStream();
+    NioSession(SocketChannel channel, SelectorFrontEnd.IoLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+    SocketChannel getChannel() {
+        return channel;
+    }
+    SelectorFrontEnd.IoLoop getLoop() {
+        return loop;
+    }
+    ClientHandler getHandler() {
+        return handler;
+    }
+    void setHandler(ClientHandler handler) {
+        this.handler = handler;
+    }
+    void useBinaryFraming() {
+        synchronized (inboundLock) {
+            binaryFraming = true;
+        }
+    }
+    boolean append(ByteBuffer data) {
+        synchronized (inboundLock) {
+            int length = data.remaining();
+            ensureInboundCapacity(length);
+            data.get(inbound, inboundEnd, length);
+            inboundEnd += length;
+            inboundLock.notifyAll();
+            return trySchedule();
+        }
+    }
+    boolean markEndOfStream() {
+        synchronized (inboundLock) {
+            endOfStream = true;
+            inboundLock.notifyAll();
+            return trySchedule();
+        }
+    }
+    boolean isInboundFull() {
+        synchronized (inboundLock) {
+            if (inboundEnd - inboundStart >= MAX_INBOUND_BYTES) {
+                readSuspended = true;
+            }
+            return readSuspended;
+        }
+    }
+    boolean hasCompleteCommand() {
+        synchronized (inboundLock) {
+            return hasCompleteMessage() || inboundEnd - inboundStart >= MAX_INBOUND_BYTES;
+        }
+    }
+    boolean isEndOfStream() {
+        synchronized (inboundLock) {
+            return endOfStream && inboundStart == inboundEnd;
+        }
+    }
+    boolean finishBatch() {
+        synchronized (inboundLock) {
+            scheduled = false;
+            return trySchedule();
+        }
+    }
+    private boolean trySchedule() {
+        if (scheduled || closed) {
+            return false;
+        }
+        if (hasCompleteMessage() || endOfStream || inboundEnd - inboundStart >= MAX_INBOUND_BYTES) {
+            scheduled = true;
+            return true;
+        }
+        return false;
+    }
+    private boolean hasCompleteMessage() {
+        if (!binaryFraming) {
+            return hasCompleteLine();
+        }
+        int available = inboundEnd - inboundStart;
+        if (available < 4) {
+            return false;
+        }
+        int length = ((inbound[inboundStart] & 0xFF) << 24) | ((inbound[inboundStart + 1] & 0xFF) << 16)
+                | ((inbound[inboundStart + 2] & 0xFF) << 8) | (inbound[inboundStart + 3] & 0xFF);
+        if (length > FrameCodec.MAX_BYTES_FRAME_BYTES || available - 4 >= length) {
+            return true;
+        }
+        return available > 4 && length > FrameCodec.maxFrameBytes(inbound[inboundStart + 4]);
+    }
+    private boolean hasCompleteLine() {
+        for (; scanPosition < inboundEnd; scanPosition++) {
+            if (inbound[scanPosition] == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+    private void ensureInboundCapacity(int extra) {
+        if (inboundEnd + extra <= inbound.length) {
+            return;
+        }
+        int live = inboundEnd - inboundStart;
+        byte[] target = live + extra <= inbound.length ? inbound : new byte[Math.max(inbound.length * 2, live + extra)];
+        System.arraycopy(inbound, inboundStart, target, 0, live);
+        scanPosition -= inboundStart;
+        inbound = target;
+        inboundStart = 0;
+        inboundEnd = live;
+    }
+    private void consumed() {
+        if (scanPosition < inboundStart) {
+            scanPosition = inboundStart;
+        }
+        if (readSuspended && inboundEnd - inboundStart < MAX_INBOUND_BYTES / 2) {
+            readSuspended = false;
+            loop.resumeReading(this);
+        }
+    }
+    boolean flushOutbound() throws IOException {
+        synchronized (outboundLock) {
+            while (!outbound.isEmpty()) {
+                ByteBuffer head = outbound.peek();
+                int written = channel.write(head);
+                outboundBytes -= written;
+                if (head.hasRemaining()) {
+                    return false;
+                }
+                outbound.poll();
+            }
+            outboundLock.notifyAll();
+            return true;
+        }
+    }
+    void close() {
+        synchronized (inboundLock) {
+            closed = true;
+            inboundLock.notifyAll();
+        }
+        synchronized (outboundLock) {
+            outbound.clear();
+            outboundBytes = 0;
+            outboundLock.notifyAll();
+        }
+    }
+    private class SessionInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : single[0] & 0xFF;
+        }
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            synchronized (inboundLock) {
+                int timeout = channel.socket().getSoTimeout();
+                long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+                while (inboundStart == inboundEnd && !endOfStream && !closed) {
+                    try {
+                        if (deadline == 0) {
+                            inboundLock.wait();
+                        } else {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                throw new SocketTimeoutException("Read timed out");
+                            }
+                            inboundLock.wait(remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for client data");
+                    }
+                }
+                if (inboundStart == inboundEnd) {
+                    return -1;
+                }
+                int count = 0;
+                while (count < length && inboundStart < inboundEnd) {
+                    byte value = inbound[inboundStart++];
+                    buffer[offset + count++] = value;
+                    if (value == '\n' && !binaryFraming) {
+                        break;
+                    }
+                }
+                consumed();
+                return count;
+            }
+        }
+        @Override
+        public int available() {
+            synchronized (inboundLock) {
+                return binaryFraming ? inboundEnd - inboundStart : 0;
+            }
+        }
+        @Override
+        public void close() {
+            NioSession.this.close();
+        }
+    }
+    private class SessionOutputStream extends OutputStream {
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[]{(byte) value}, 0, 1);
+        }
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            ByteBuffer data = ByteBuffer.wrap(buffer, offset, length);
+            synchronized (outboundLock) {
+                if (!channel.isOpen()) {
+                    throw new IOException("Connection closed");
+                }
+                if (outbound.isEmpty()) {
+                    channel.write(data);
+                    if (!data.hasRemaining()) {
+                        return;
+                    }
+                }
+                ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+                copy.put(data).flip();
+                outbound.add(copy);
+                outboundBytes += copy.remaining();
+                loop.requestWrite(NioSession.this);
+                while (outboundBytes > MAX_OUTBOUND_BYTES && channel.isOpen()) {
+                    try {
+                        outboundLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for client to drain output");
+                    }
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
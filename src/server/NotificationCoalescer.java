@@ -0,0 +1,80 @@
+package server;
+import model.Notification;
+import model.NotificationType;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+// Folds repeated events between the same two users into one unread notification for the length of a window.
+class NotificationCoalescer {
+    private static final class EventKey {
+        private final String senderID;
+        private final String receiverID;
+        private final NotificationType type;
+        private final int hash;
+        EventKey(Notification notification) {
+            this.senderID = notification.getSenderID();
+            this.receiverID = notification.getReceiverID();
+            this.type = notification.getNotificationType();
+            this.hash = Objects.hash(senderID, receiverID, type);
+        }
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof EventKey)) {
+                return false;
+            }
+            EventKey key = (EventKey) other;
+            return senderID.equals(key.senderID) && receiverID.equals(key.receiverID) && type == key.type;
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    private final Map<EventKey, Notification> latest = new ConcurrentHashMap<>();
+    private final Duration window;
+    private final ServerMetrics metrics;
+    NotificationCoalescer(Duration window, ServerMetrics metrics) {
+        this.window = window;
+        this.metrics = metrics;
+        metrics.registerGauge("notifications.coalesce_keys", latest::size);
+    }
+    Duration getWindow() {
+        return window;
+    }
+    static boolean isCoalesced(Notification notification) {
+        NotificationType type = notification.getNotificationType();
+        return type == NotificationType.PROFILE_VIEW || type == NotificationType.PROFILE_DENIED;
+    }
+    Notification merge(Notification notification, NotificationStore store) {
+        long windowStart = notification.getTimestampMillis() - window.toMillis();
+        Notification[] merged = new Notification[1];
+        latest.compute(new EventKey(notification), (key, existing) -> {
+            if (existing != null && !existing.isRead() && existing.getTimestampMillis() > windowStart) {
+                merged[0] = existing;
+                return existing;
+            }
+            return null;
+        });
+        if (merged[0] == null || !store.recordRepeat(merged[0], notification.getTimestampMillis())) {
+            return null;
+        }
+        metrics.increment("notifications.coalesced");
+        return merged[0];
+    }
+    void remember(Notification notification) {
+        if (isCoalesced(notification) && !notification.isRead()) {
+            latest.put(new EventKey(notification), notification);
+        }
+    }
+    void forget(Notification notification) {
+        if (isCoalesced(notification)) {
+            latest.computeIfPresent(new EventKey(notification),
+                    (key, existing) -> existing.getId() == notification.getId() ? null : existing);
+        }
+    }
+    void prune() {
+        long windowStart = System.currentTimeMillis() - window.toMillis();
+        latest.values().removeIf(notification -> notification.isRead() || notification.getTimestampMillis() <= windowStart);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+// Measures how long readers of unrelated users wait while many writers fan out into one hot recipient.
+public class NotificationContentionBenchmark {
+    private static final String HOT_USER = "hot";
+    private static class GlobalLockStore implements NotificationStore {
+        private final NotificationStore delegate;
+        GlobalLockStore(NotificationStore delegate) {
+            this.delegate = delegate;
+        }
+        @Override
+        public synchronized Notification add(Notification notification) {
+            return delegate.add(notification);
+        }
+        @Override
+        public synchronized List<Notification> getActive(String clientID) {
+            return delegate.getActive(clientID);
+        }
+        @Override
+        public synchronized List<Notification> getPage(String clientID, long since, int limit) {
+            return delegate.getPage(clientID, since, limit);
+        }
+        @Override
+        public synchronized List<Notification> acknowledge(String clientID, long cursor) {
+            return delegate.acknowledge(clientID, cursor);
+        }
+        @Override
+        public synchronized boolean markRead(Notification notification) {
+            return delegate.markRead(notification);
+        }
+        @Override
+        public synchronized void updateStatus(Notification notification, NotificationStatus status) {
+            delegate.updateStatus(notification, status);
+        }
+        @Override
+        public synchronized boolean recordRepeat(Notification notification, long seenAtMillis) {
+            return delegate.recordRepeat(notification, seenAtMillis);
+        }
+        @Override
+        public synchronized void forEach(Consumer<Notification> action) {
+            delegate.forEach(action);
+        }
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "heap";
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int hotBacklog = args.length > 4 ? Integer.parseInt(args[4]) : 100000;
+        int users = 1000;
+        ServerMetrics metrics = new ServerMetrics();
+        NotificationRetention retention = new NotificationRetention(hotBacklog, Duration.ofDays(1), metrics,
+                notification -> { });
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "benchmark-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        NotificationStore store;
+        switch (mode) {
+            case "global":
+                store = new GlobalLockStore(new HeapNotificationStore(retention));
+                break;
+            case "offheap":
+                store = new OffHeapNotificationStore(Files.createTempDirectory("notification-bench"), 64 << 20,
+                        retention, scheduler, metrics);
+                break;
+            default:
+                store = new HeapNotificationStore(retention);
+        }
+        AtomicLong nextId = new AtomicLong(1);
+        for (int i = 0; i < hotBacklog; i++) {
+            store.add(notification(nextId, HOT_USER));
+        }
+        for (int user = 0; user < users; user++) {
+            for (int i = 0; i < 20; i++) {
+                store.add(notification(nextId, "user" + user));
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(writers + readers);
+        AtomicLong writes = new AtomicLong();
+        List<long[]> readLatencies = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    store.add(notification(nextId, random.nextInt(4) == 0 ? "user" + random.nextInt(users) : HOT_USER));
+                    if (random.nextInt(64) == 0) {
+                        store.getActive(HOT_USER);
+                    }
+                    count++;
+                }
+                writes.addAndGet(count);
+                done.countDown();
+            }, "writer-" + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            long[] samples = new long[1 << 20];
+            readLatencies.add(samples);
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int count = 0;
+                while (System.nanoTime() < deadline && count < samples.length - 1) {
+                    long start = System.nanoTime();
+                    store.getActive("user" + random.nextInt(users));
+                    samples[++count] = System.nanoTime() - start;
+                }
+                samples[0] = count;
+                done.countDown();
+            }, "reader-" + r));
+        }
+        threads.forEach(Thread::start);
+        done.await();
+        long[] all = readLatencies.stream().flatMapToLong(samples -> Arrays.stream(samples, 1, (int) samples[0] + 1)).toArray();
+        Arrays.sort(all);
+        System.out.println("mode=" + mode + " writers=" + writers + " readers=" + readers + " seconds=" + seconds +
+                " hotBacklog=" + hotBacklog);
+        System.out.println("writes/s=" + writes.get() / seconds + " reads/s=" + all.length / seconds);
+        System.out.println("unrelated read latency us: p50=" + micros(all, 0.50) + " p99=" + micros(all, 0.99) +
+                " p99.9=" + micros(all, 0.999) + " max=" + (all.length == 0 ? 0 : all[all.length - 1] / 1000));
+        store.close();
+    }
+    private static Notification notification(AtomicLong nextId, String receiverID) {
+        Notification notification = new Notification("sender", receiverID, "post", "benchmark post");
+        notification.setId(nextId.getAndIncrement());
+        return notification;
+    }
+    private static long micros(long[] sorted, double percentile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1000;
+    }
+}
\ No newline at end of file
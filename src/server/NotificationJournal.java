@@ -0,0 +1,409 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import model.NotificationType;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+// Persists notifications and their status changes to rotating journal segments, written in group commits off the request path.
+class NotificationJournal {
+    private static final Logger logger = Logger.getLogger(NotificationJournal.class.getName());
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long SEGMENT_BYTES = Long.getLong("server.notifications.segmentBytes", 8L * 1024 * 1024);
+    private static final int MAX_SEGMENTS = Integer.getInteger("server.notifications.maxSegments", 8);
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    private static final long WRITE_RETRY_MILLIS = 200;
+    private static final long ENQUEUE_WAIT_MILLIS = 50;
+    private static final byte ADD_RECORD = 1;
+    private static final byte STATUS_RECORD = 2;
+    private static final byte READ_RECORD = 3;
+    private static final byte REPEAT_RECORD = 4;
+    private static final byte HIGH_WATER_RECORD = 5;
+    interface Checkpoint {
+        void forEachNotification(Consumer<Notification> action);
+    }
+    private static class JournalRecord {
+        private final byte kind;
+        private final long id;
+        private final Notification notification;
+        private final NotificationStatus status;
+        private final int count;
+        private final long lastSeen;
+        JournalRecord(byte kind, long id, Notification notification, NotificationStatus status) {
+            this(kind, id, notification, status, 0, 0);
+        }
+        JournalRecord(byte kind, long id, Notification notification, NotificationStatus status, int count,
+                      long lastSeen) {
+            this.kind = kind;
+            this.id = id;
+            this.notification = notification;
+            this.status = status;
+            this.count = count;
+            this.lastSeen = lastSeen;
+        }
+    }
+    private final Path directory;
+    private final Checkpoint checkpoint;
+    private final ServerMetrics metrics;
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Path> sealed = new ArrayList<>();
+    private final AtomicLong highWaterId = new AtomicLong();
+    private final AtomicBoolean degraded = new AtomicBoolean();
+    private volatile boolean running;
+    private Thread writer;
+    private FileChannel segment;
+    private Path segmentFile;
+    private long nextSegment = 1;
+    NotificationJournal(Path directory, Checkpoint checkpoint, ServerMetrics metrics) {
+        this.directory = directory;
+        this.checkpoint = checkpoint;
+        this.metrics = metrics;
+        metrics.registerGauge("notifications.journal_backlog", pending::size);
+    }
+    List<Notification> replay() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        List<List<JournalRecord>> decoded;
+        try {
+            decoded = segments.parallelStream().map(this::readSegment).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Map<Long, Notification> byId = new HashMap<>();
+        int records = 0;
+        for (List<JournalRecord> segmentRecords : decoded) {
+            for (JournalRecord record : segmentRecords) {
+                highWaterId.accumulateAndGet(record.id, Math::max);
+                Notification notification = byId.get(record.id);
+                if (record.kind == ADD_RECORD) {
+                    byId.put(record.id, record.notification);
+                } else if (notification != null && record.kind == STATUS_RECORD) {
+                    notification.setStatus(record.status);
+                } else if (notification != null && record.kind == READ_RECORD) {
+                    notification.markAsRead();
+                } else if (notification != null && record.kind == REPEAT_RECORD) {
+                    notification.setRepeats(record.count, record.lastSeen);
+                }
+            }
+            records += segmentRecords.size();
+        }
+        sealed.addAll(segments);
+        if (!segments.isEmpty()) {
+            nextSegment = segmentNumber(segments.get(segments.size() - 1)) + 1;
+        }
+        List<Notification> notifications = new ArrayList<>(byId.values());
+        notifications.sort(Comparator.comparingLong(Notification::getId));
+        logger.info("Replayed " + records + " notification journal records from " + segments.size() +
+                " segments into " + notifications.size() + " notifications");
+        return notifications;
+    }
+    long getHighWaterId() {
+        return highWaterId.get();
+    }
+    void start() throws IOException {
+        openSegment();
+        running = true;
+        writer = new Thread(this::writeLoop, "notification-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    void recordAdded(Notification notification) {
+        highWaterId.accumulateAndGet(notification.getId(), Math::max);
+        enqueue(encodeAdd(notification));
+    }
+    void recordStatus(Notification notification) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(STATUS_RECORD);
+            out.writeLong(notification.getId());
+            writeString(out, notification.getStatus());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        enqueue(frame(bytes.toByteArray()));
+    }
+    void recordRead(Notification notification) {
+        ByteBuffer payload = ByteBuffer.allocate(9).put(READ_RECORD).putLong(notification.getId());
+        enqueue(frame(payload.array()));
+    }
+    void recordRepeat(Notification notification) {
+        ByteBuffer payload = ByteBuffer.allocate(21).put(REPEAT_RECORD).putLong(notification.getId())
+                .putInt(notification.getCount()).putLong(notification.getLastSeenMillis());
+        enqueue(frame(payload.array()));
+    }
+    private void enqueue(byte[] record) {
+        if (!running) {
+            return;
+        }
+        try {
+            if (pending.offer(record, ENQUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.increment("notifications.journal_dropped");
+        if (degraded.compareAndSet(false, true)) {
+            logger.severe("Notification journal is not keeping up; dropping records until it recovers");
+        }
+    }
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        int failures = 0;
+        while (running || !pending.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    byte[] first = pending.poll(200, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    pending.drainTo(batch);
+                }
+                write(batch);
+                segment.force(false);
+                metrics.add("notifications.journal_records", batch.size());
+                metrics.increment("notifications.journal_commits");
+                batch.clear();
+                failures = 0;
+                if (pending.isEmpty() && degraded.compareAndSet(true, false)) {
+                    logger.info("Notification journal caught up; records are persisted again");
+                }
+                if (segment.size() >= SEGMENT_BYTES) {
+                    rotate();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                failures++;
+                metrics.increment("notifications.journal_failures");
+                if (!running && failures >= MAX_WRITE_ATTEMPTS) {
+                    logger.severe("Giving up on " + batch.size() + " notification journal records after " +
+                            failures + " failed attempts: " + e.getMessage());
+                    batch.clear();
+                    continue;
+                }
+                logger.severe("Error writing notification journal, retrying " + batch.size() +
+                        " records in a new segment (attempt " + failures + "): " + e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(WRITE_RETRY_MILLIS * Math.min(failures, 25));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                reopenSegment();
+            }
+        }
+    }
+    private void reopenSegment() {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            logger.warning("Error closing failed notification journal segment: " + e.getMessage());
+        }
+        Path previous = segmentFile;
+        try {
+            openSegment();
+        } catch (IOException e) {
+            logger.severe("Error opening a new notification journal segment: " + e.getMessage());
+        }
+        if (segmentFile != previous && !sealed.contains(previous)) {
+            sealed.add(previous);
+        }
+    }
+    private void write(List<byte[]> batch) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= segment.write(buffers);
+        }
+    }
+    private void rotate() throws IOException {
+        segment.close();
+        Path previous = segmentFile;
+        openSegment();
+        sealed.add(previous);
+        if (sealed.size() < MAX_SEGMENTS) {
+            return;
+        }
+        List<byte[]> live = new ArrayList<>();
+        checkpoint.forEachNotification(notification -> live.add(encodeAdd(notification)));
+        for (int start = 0; start < live.size(); start += 1024) {
+            write(live.subList(start, Math.min(live.size(), start + 1024)));
+        }
+        segment.force(false);
+        for (Path obsolete : sealed) {
+            Files.deleteIfExists(obsolete);
+        }
+        logger.info("Checkpointed " + live.size() + " notifications and removed " + sealed.size() + " journal segments");
+        sealed.clear();
+    }
+    private void openSegment() throws IOException {
+        Path path = segmentPath(nextSegment++);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentFile = path;
+        ByteBuffer header = ByteBuffer.allocate(9).put(HIGH_WATER_RECORD).putLong(highWaterId.get());
+        write(Collections.singletonList(frame(header.array())));
+    }
+    void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+            segment.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.severe("Error closing notification journal: " + e.getMessage());
+        }
+    }
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(Comparator.comparingLong(this::segmentNumber));
+        return segments;
+    }
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+    private long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    private List<JournalRecord> readSegment(Path path) {
+        List<JournalRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            CRC32 crc = new CRC32();
+            long remaining = Files.size(path);
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long checksum = in.readInt() & 0xFFFFFFFFL;
+                remaining -= FRAME_HEADER_BYTES;
+                if (length < 0 || length > MAX_RECORD_BYTES || length > remaining) {
+                    logger.warning("Stopping replay of " + path.getFileName() + " at a record with invalid length " + length);
+                    break;
+                }
+                remaining -= length;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    logger.warning("Stopping replay of " + path.getFileName() + " at a corrupt record");
+                    break;
+                }
+                try {
+                    records.add(decode(payload));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Skipping record in " + path.getFileName() + ": " + e.getMessage());
+                }
+            }
+        } catch (EOFException e) {
+            logger.warning("Ignoring torn record at the end of " + path.getFileName());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+    private static JournalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte kind = in.readByte();
+        long id = in.readLong();
+        if (kind == STATUS_RECORD) {
+            return new JournalRecord(kind, id, null, NotificationStatus.fromWireName(readString(in)));
+        }
+        if (kind == READ_RECORD) {
+            return new JournalRecord(kind, id, null, null);
+        }
+        if (kind == REPEAT_RECORD) {
+            return new JournalRecord(kind, id, null, null, in.readInt(), in.readLong());
+        }
+        if (kind == HIGH_WATER_RECORD) {
+            return new JournalRecord(kind, id, null, null);
+        }
+        long timestamp = in.readLong();
+        String senderID = readString(in);
+        String receiverID = readString(in);
+        NotificationType type = NotificationType.fromWireName(readString(in));
+        String content = readString(in);
+        NotificationStatus status = NotificationStatus.fromWireName(readString(in));
+        boolean read = in.readBoolean();
+        String subject = in.available() > 0 ? readString(in) : "";
+        Notification notification = new Notification(senderID, receiverID, type, content, subject, timestamp, status, read);
+        notification.setId(id);
+        if (in.available() > 0) {
+            notification.setRepeats(in.readInt(), in.readLong());
+        }
+        return new JournalRecord(kind, id, notification, null);
+    }
+    private static byte[] encodeAdd(Notification notification) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(ADD_RECORD);
+            out.writeLong(notification.getId());
+            out.writeLong(notification.getTimestampMillis());
+            writeString(out, notification.getSenderID());
+            writeString(out, notification.getReceiverID());
+            writeString(out, notification.getType());
+            writeString(out, notification.getContent());
+            writeString(out, notification.getStatus());
+            out.writeBoolean(notification.isRead());
+            writeString(out, notification.getSubject());
+            out.writeInt(notification.getCount());
+            out.writeLong(notification.getLastSeenMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame(bytes.toByteArray());
+    }
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+    }
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
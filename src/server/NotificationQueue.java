@@ -0,0 +1,128 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+// Holds one recipient's notifications in a bounded ring behind its own lock so unrelated users never contend.
+class NotificationQueue {
+    private final NotificationRetention retention;
+    private Notification[] ring = new Notification[8];
+    private int head;
+    private int size;
+    NotificationQueue(NotificationRetention retention) {
+        this.retention = retention;
+    }
+    synchronized int add(Notification notification) {
+        if (size >= retention.getMaxPerUser() || size == ring.length) {
+            purge();
+            while (size >= retention.getMaxPerUser() && evictOldest()) {
+            }
+            if (size == ring.length) {
+                grow();
+            }
+        }
+        ring[(head + size) & (ring.length - 1)] = notification;
+        size++;
+        retention.retain(notification);
+        return size;
+    }
+    synchronized List<Notification> getActive() {
+        purge();
+        List<Notification> active = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            active.add(ring[(head + i) & (ring.length - 1)]);
+        }
+        return active;
+    }
+    synchronized List<Notification> getPage(long since, int limit) {
+        purge();
+        List<Notification> page = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Notification notification = ring[(head + i) & (ring.length - 1)];
+            if (notification.getId() > since) {
+                page.add(notification);
+            }
+        }
+        page.sort(Comparator.comparingLong(Notification::getId));
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit + 1)) : page;
+    }
+    synchronized List<Notification> acknowledge(long cursor) {
+        List<Notification> acknowledged = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Notification notification = ring[(head + i) & (ring.length - 1)];
+            if (notification.getId() <= cursor && !notification.isRead() && !notification.isPendingRequest()) {
+                notification.markAsRead();
+                acknowledged.add(notification);
+            }
+        }
+        return acknowledged;
+    }
+    synchronized boolean markRead(Notification notification) {
+        if (notification.isRead()) {
+            return false;
+        }
+        notification.markAsRead();
+        return true;
+    }
+    synchronized boolean recordRepeat(Notification notification, long seenAtMillis) {
+        if (notification.isRead()) {
+            return false;
+        }
+        notification.recordRepeat(seenAtMillis);
+        return true;
+    }
+    synchronized void updateStatus(Notification notification, NotificationStatus status) {
+        notification.setStatus(status);
+    }
+    synchronized void forEach(Consumer<Notification> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(ring[(head + i) & (ring.length - 1)]);
+        }
+    }
+    private void purge() {
+        long cutoff = retention.expiryCutoffMillis();
+        int mask = ring.length - 1;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Notification notification = ring[(head + i) & mask];
+            if (notification.isPendingRequest() ||
+                    (!notification.isRead() && notification.getTimestampMillis() >= cutoff)) {
+                ring[(head + kept++) & mask] = notification;
+            } else {
+                retention.release(notification, false);
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            ring[(head + i) & mask] = null;
+        }
+        size = kept;
+    }
+    private boolean evictOldest() {
+        int mask = ring.length - 1;
+        int victim = 0;
+        while (victim < size && ring[(head + victim) & mask].isPendingRequest()) {
+            victim++;
+        }
+        if (victim == size) {
+            return false;
+        }
+        retention.release(ring[(head + victim) & mask], true);
+        for (int i = victim; i > 0; i--) {
+            ring[(head + i) & mask] = ring[(head + i - 1) & mask];
+        }
+        ring[head] = null;
+        head = (head + 1) & mask;
+        size--;
+        return true;
+    }
+    private void grow() {
+        Notification[] larger = new Notification[ring.length * 2];
+        for (int i = 0; i < size; i++) {
+            larger[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        ring = larger;
+        head = 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package server;
+import model.Notification;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+// Retention limits shared by every recipient's notification ring, and the totals they are accounted against.
+class NotificationRetention {
+    private static final int NOTIFICATION_OVERHEAD_BYTES = 72;
+    private final int maxPerUser;
+    private final Duration maxAge;
+    private final AtomicLong retained = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final ServerMetrics metrics;
+    private final Consumer<Notification> releaseListener;
+    NotificationRetention(int maxPerUser, Duration maxAge, ServerMetrics metrics, Consumer<Notification> releaseListener) {
+        this.maxPerUser = maxPerUser;
+        this.maxAge = maxAge;
+        this.metrics = metrics;
+        this.releaseListener = releaseListener;
+        metrics.registerGauge("notifications.retained", retained::get);
+        metrics.registerGauge("notifications.heap_bytes", retainedBytes::get);
+    }
+    int getMaxPerUser() {
+        return maxPerUser;
+    }
+    long expiryCutoffMillis() {
+        return System.currentTimeMillis() - maxAge.toMillis();
+    }
+    void retain(Notification notification) {
+        retain(estimateBytes(notification));
+    }
+    void retainOffHeap() {
+        retain(0);
+    }
+    void release(Notification notification, boolean evicted) {
+        release(notification, evicted, estimateBytes(notification));
+    }
+    void releaseOffHeap(Notification notification, boolean evicted) {
+        release(notification, evicted, 0);
+    }
+    private void retain(long heapBytes) {
+        retained.incrementAndGet();
+        retainedBytes.addAndGet(heapBytes);
+    }
+    private void release(Notification notification, boolean evicted, long heapBytes) {
+        retained.decrementAndGet();
+        retainedBytes.addAndGet(-heapBytes);
+        metrics.increment(evicted ? "notifications.evicted" : "notifications.purged");
+        releaseListener.accept(notification);
+    }
+    private static long estimateBytes(Notification notification) {
+        return NOTIFICATION_OVERHEAD_BYTES + notification.getContent().length();
+    }
+}
\ No newline at end of file
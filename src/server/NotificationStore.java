@@ -0,0 +1,17 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import java.util.List;
+import java.util.function.Consumer;
+// Keeps every recipient's notifications; the server reads and updates them only through this interface.
+interface NotificationStore {
+    Notification add(Notification notification);
+    List<Notification> getActive(String clientID);
+    List<Notification> getPage(String clientID, long since, int limit);
+    List<Notification> acknowledge(String clientID, long cursor);
+    boolean markRead(Notification notification);
+    void updateStatus(Notification notification, NotificationStatus status);
+    boolean recordRepeat(Notification notification, long seenAtMillis);
+    void forEach(Consumer<Notification> action);
+    void close();
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package server;
+import model.Notification;
+import protocol.Frame;
+import protocol.FrameWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+// Pushes a subscribed connection's new notifications to it in order through a bounded outbound queue.
+class NotificationSubscriber {
+    private static final Logger logger = Logger.getLogger(NotificationSubscriber.class.getName());
+    private final String clientID;
+    private final FrameWriter frameOut;
+    private final SocialNetworkServer server;
+    private final Executor pushExecutor;
+    private final ServerMetrics metrics;
+    private final BlockingQueue<Notification> outbound;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+    NotificationSubscriber(String clientID, FrameWriter frameOut, SocialNetworkServer server,
+                           Executor pushExecutor, int capacity) {
+        this.clientID = clientID;
+        this.frameOut = frameOut;
+        this.server = server;
+        this.pushExecutor = pushExecutor;
+        this.metrics = server.getMetrics();
+        this.outbound = new ArrayBlockingQueue<>(capacity);
+    }
+    String getClientID() {
+        return clientID;
+    }
+    void offer(Notification notification) {
+        if (closed) {
+            return;
+        }
+        if (!outbound.offer(notification)) {
+            metrics.increment("notifications.push_dropped");
+            return;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            pushExecutor.execute(this::drain);
+        }
+    }
+    private void drain() {
+        List<Notification> batch = new ArrayList<>();
+        outbound.drainTo(batch);
+        if (!closed && !batch.isEmpty()) {
+            for (Notification notification : batch) {
+                frameOut.writeFrame(Frame.push(notification.toString()));
+            }
+            frameOut.flush();
+            if (frameOut.checkError()) {
+                logger.warning("Stopped pushing notifications to client " + clientID + " after a write failure");
+                close();
+            } else {
+                for (Notification notification : batch) {
+                    if (!notification.isPendingRequest()) {
+                        server.markNotificationRead(notification);
+                    }
+                }
+                metrics.add("notifications.pushed", batch.size());
+            }
+        }
+        scheduled.set(false);
+        if (!closed && !outbound.isEmpty() && scheduled.compareAndSet(false, true)) {
+            pushExecutor.execute(this::drain);
+        }
+    }
+    void close() {
+        closed = true;
+        outbound.clear();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,534 @@
+package server;
+import model.Notification;
+import model.NotificationStatus;
+import model.NotificationType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+// Keeps serialized notifications in memory-mapped segments, chained per recipient, with only chain heads and tails on heap.
+class OffHeapNotificationStore implements NotificationStore {
+    private static final Logger logger = Logger.getLogger(OffHeapNotificationStore.class.getName());
+    private static final long COMPACT_SECONDS = Long.getLong("server.notifications.offheap.compactSeconds", 30L);
+    private static final long NIL = -1;
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final int LENGTH = 0;
+    private static final int STATE = 4;
+    private static final int TYPE = 5;
+    private static final int STATUS = 6;
+    private static final int READ = 7;
+    private static final int PREV = 8;
+    private static final int NEXT = 16;
+    private static final int ID = 24;
+    private static final int TIMESTAMP = 32;
+    private static final int LAST_SEEN = 40;
+    private static final int COUNT = 48;
+    private static final int STRINGS = 52;
+    private static final NotificationType[] TYPES = NotificationType.values();
+    private static final NotificationStatus[] STATUSES = NotificationStatus.values();
+    private static final class StoredNotification extends Notification {
+        private final long address;
+        StoredNotification(long address, String senderID, String receiverID, NotificationType type, String content,
+                           String subject, long timestampMillis, NotificationStatus status, boolean isRead) {
+            super(senderID, receiverID, type, content, subject, timestampMillis, status, isRead);
+            this.address = address;
+        }
+    }
+    private static final class Chain {
+        private long head = NIL;
+        private long tail = NIL;
+        private int size;
+    }
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int top;
+        private int liveRecords;
+        private long liveBytes;
+        Segment(Path path, int capacity) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+    private final Path directory;
+    private final int segmentBytes;
+    private final NotificationRetention retention;
+    private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    private volatile Segment[] segments = new Segment[0];
+    private final ReentrantReadWriteLock layoutLock = new ReentrantReadWriteLock();
+    private final Object allocationLock = new Object();
+    private Segment active;
+    private int activeIndex;
+    OffHeapNotificationStore(Path directory, int segmentBytes, NotificationRetention retention,
+                             ScheduledExecutorService scheduler, ServerMetrics metrics) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retention = retention;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "segment-*.bin")) {
+            for (Path path : stale) {
+                Files.delete(path);
+            }
+        }
+        active = newSegment();
+        metrics.registerGauge("notifications.offheap_segments", this::getSegmentCount);
+        metrics.registerGauge("notifications.offheap_live_bytes", this::getLiveBytes);
+        long period = Math.max(1, COMPACT_SECONDS);
+        scheduler.scheduleWithFixedDelay(this::compact, period, period, TimeUnit.SECONDS);
+        logger.info("Storing notifications off heap in " + segmentBytes + " byte segments under " + directory);
+    }
+    @Override
+    public Notification add(Notification notification) {
+        byte[] sender = notification.getSenderID().getBytes(StandardCharsets.UTF_8);
+        byte[] receiver = notification.getReceiverID().getBytes(StandardCharsets.UTF_8);
+        byte[] content = notification.getContent().getBytes(StandardCharsets.UTF_8);
+        byte[] subject = notification.getSubject().getBytes(StandardCharsets.UTF_8);
+        int length = STRINGS + 16 + sender.length + receiver.length + content.length + subject.length;
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("Notification of " + length + " bytes does not fit in a segment");
+        }
+        Chain chain = chains.computeIfAbsent(notification.getReceiverID(), id -> new Chain());
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                if (chain.size >= retention.getMaxPerUser()) {
+                    purge(chain);
+                    while (chain.size >= retention.getMaxPerUser() && evictOldest(chain)) {
+                    }
+                }
+                long address = allocate(length);
+                Segment segment = segmentOf(address);
+                int offset = offsetOf(address);
+                ByteBuffer buffer = segment.buffer;
+                buffer.putInt(offset + LENGTH, length);
+                buffer.put(offset + TYPE, (byte) notification.getNotificationType().ordinal());
+                buffer.put(offset + STATUS, (byte) notification.getNotificationStatus().ordinal());
+                buffer.put(offset + READ, (byte) (notification.isRead() ? 1 : 0));
+                buffer.putLong(offset + ID, notification.getId());
+                buffer.putLong(offset + TIMESTAMP, notification.getTimestampMillis());
+                buffer.putLong(offset + LAST_SEEN, notification.getLastSeenMillis());
+                buffer.putInt(offset + COUNT, notification.getCount());
+                int position = offset + STRINGS;
+                for (byte[] field : new byte[][]{sender, receiver, content, subject}) {
+                    buffer.putInt(position, field.length);
+                    buffer.put(position + 4, field);
+                    position += 4 + field.length;
+                }
+                linkLast(chain, address);
+                buffer.put(offset + STATE, LIVE);
+                Notification stored = read(address);
+                retention.retainOffHeap();
+                return stored;
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+    @Override
+    public List<Notification> getActive(String clientID) {
+        List<Notification> active = new ArrayList<>();
+        Chain chain = chains.get(clientID);
+        if (chain == null) {
+            return active;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                purge(chain);
+                for (long address = chain.head; address != NIL; address = getLong(address, NEXT)) {
+                    active.add(read(address));
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        return active;
+    }
+    @Override
+    public List<Notification> getPage(String clientID, long since, int limit) {
+        List<Notification> page = new ArrayList<>();
+        Chain chain = chains.get(clientID);
+        if (chain == null) {
+            return page;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                purge(chain);
+                for (long address = chain.head; address != NIL; address = getLong(address, NEXT)) {
+                    if (getLong(address, ID) > since) {
+                        page.add(read(address));
+                    }
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        page.sort(Comparator.comparingLong(Notification::getId));
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit + 1)) : page;
+    }
+    @Override
+    public List<Notification> acknowledge(String clientID, long cursor) {
+        List<Notification> acknowledged = new ArrayList<>();
+        Chain chain = chains.get(clientID);
+        if (chain == null) {
+            return acknowledged;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                for (long address = chain.head; address != NIL; address = getLong(address, NEXT)) {
+                    if (getLong(address, ID) <= cursor && getByte(address, READ) == 0 && !isPendingRequest(address)) {
+                        putByte(address, READ, (byte) 1);
+                        acknowledged.add(read(address));
+                    }
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        return acknowledged;
+    }
+    @Override
+    public boolean markRead(Notification notification) {
+        Chain chain = chains.get(notification.getReceiverID());
+        if (chain == null) {
+            return false;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                long address = locate(chain, notification);
+                if (address == NIL || getByte(address, READ) != 0) {
+                    return false;
+                }
+                putByte(address, READ, (byte) 1);
+                notification.markAsRead();
+                return true;
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+    @Override
+    public void updateStatus(Notification notification, NotificationStatus status) {
+        Chain chain = chains.get(notification.getReceiverID());
+        notification.setStatus(status);
+        if (chain == null) {
+            return;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                long address = locate(chain, notification);
+                if (address != NIL) {
+                    putByte(address, STATUS, (byte) status.ordinal());
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+    @Override
+    public boolean recordRepeat(Notification notification, long seenAtMillis) {
+        Chain chain = chains.get(notification.getReceiverID());
+        if (chain == null) {
+            return false;
+        }
+        layoutLock.readLock().lock();
+        try {
+            synchronized (chain) {
+                long address = locate(chain, notification);
+                if (address == NIL || getByte(address, READ) != 0) {
+                    return false;
+                }
+                Segment segment = segmentOf(address);
+                int offset = offsetOf(address);
+                int count = segment.buffer.getInt(offset + COUNT) + 1;
+                segment.buffer.putInt(offset + COUNT, count);
+                segment.buffer.putLong(offset + LAST_SEEN, seenAtMillis);
+                notification.setRepeats(count, seenAtMillis);
+                return true;
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+    @Override
+    public void forEach(Consumer<Notification> action) {
+        layoutLock.readLock().lock();
+        try {
+            for (Chain chain : chains.values()) {
+                synchronized (chain) {
+                    for (long address = chain.head; address != NIL; address = getLong(address, NEXT)) {
+                        action.accept(read(address));
+                    }
+                }
+            }
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+    void compact() {
+        layoutLock.writeLock().lock();
+        try {
+            int moved = 0;
+            Segment[] current = segments;
+            for (int index = 0; index < current.length; index++) {
+                Segment segment = current[index];
+                if (segment == active || segment.liveRecords == 0 || segment.liveBytes * 4 >= segment.top) {
+                    continue;
+                }
+                for (int offset = 0; offset < segment.top; offset += segment.buffer.getInt(offset + LENGTH)) {
+                    if (segment.buffer.get(offset + STATE) == LIVE) {
+                        relocate(addressOf(index, offset));
+                        moved++;
+                    }
+                }
+            }
+            if (moved > 0) {
+                logger.info("Compacted off-heap notification store by relocating " + moved + " notifications");
+            }
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+    @Override
+    public void close() {
+        layoutLock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                try {
+                    segment.channel.close();
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException e) {
+                    logger.warning("Error closing notification segment " + segment.path + ": " + e.getMessage());
+                }
+            }
+            segments = new Segment[0];
+            chains.clear();
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+    private void relocate(long from) {
+        int length = getInt(from, LENGTH);
+        long to = allocate(length);
+        byte[] record = new byte[length];
+        segmentOf(from).buffer.get(offsetOf(from), record);
+        segmentOf(to).buffer.put(offsetOf(to), record);
+        Chain chain = chains.get(readString(from, 1));
+        long prev = getLong(from, PREV);
+        long next = getLong(from, NEXT);
+        if (prev == NIL) {
+            chain.head = to;
+        } else {
+            putLong(prev, NEXT, to);
+        }
+        if (next == NIL) {
+            chain.tail = to;
+        } else {
+            putLong(next, PREV, to);
+        }
+        release(from);
+    }
+    private void purge(Chain chain) {
+        long cutoff = retention.expiryCutoffMillis();
+        long address = chain.head;
+        while (address != NIL) {
+            long next = getLong(address, NEXT);
+            if (!isPendingRequest(address) &&
+                    (getByte(address, READ) != 0 || getLong(address, TIMESTAMP) < cutoff)) {
+                retention.releaseOffHeap(read(address), false);
+                unlink(chain, address);
+            }
+            address = next;
+        }
+    }
+    private boolean evictOldest(Chain chain) {
+        long victim = chain.head;
+        while (victim != NIL && isPendingRequest(victim)) {
+            victim = getLong(victim, NEXT);
+        }
+        if (victim == NIL) {
+            return false;
+        }
+        retention.releaseOffHeap(read(victim), true);
+        unlink(chain, victim);
+        return true;
+    }
+    private void linkLast(Chain chain, long address) {
+        putLong(address, PREV, chain.tail);
+        putLong(address, NEXT, NIL);
+        if (chain.tail == NIL) {
+            chain.head = address;
+        } else {
+            putLong(chain.tail, NEXT, address);
+        }
+        chain.tail = address;
+        chain.size++;
+    }
+    private void unlink(Chain chain, long address) {
+        long prev = getLong(address, PREV);
+        long next = getLong(address, NEXT);
+        if (prev == NIL) {
+            chain.head = next;
+        } else {
+            putLong(prev, NEXT, next);
+        }
+        if (next == NIL) {
+            chain.tail = prev;
+        } else {
+            putLong(next, PREV, prev);
+        }
+        chain.size--;
+        release(address);
+    }
+    private void release(long address) {
+        Segment segment = segmentOf(address);
+        synchronized (allocationLock) {
+            putByte(address, STATE, FREE);
+            segment.liveRecords--;
+            segment.liveBytes -= getInt(address, LENGTH);
+        }
+    }
+    private long locate(Chain chain, Notification notification) {
+        if (notification instanceof StoredNotification) {
+            long address = ((StoredNotification) notification).address;
+            Segment[] current = segments;
+            int index = (int) (address / segmentBytes);
+            if (index < current.length && offsetOf(address) < current[index].top &&
+                    getByte(address, STATE) == LIVE && getLong(address, ID) == notification.getId()) {
+                return address;
+            }
+        }
+        for (long address = chain.head; address != NIL; address = getLong(address, NEXT)) {
+            if (getLong(address, ID) == notification.getId()) {
+                return address;
+            }
+        }
+        return NIL;
+    }
+    private long allocate(int length) {
+        synchronized (allocationLock) {
+            if (active.top + length > segmentBytes) {
+                Segment abandoned = active;
+                active = null;
+                Segment[] current = segments;
+                for (int index = 0; index < current.length; index++) {
+                    Segment candidate = current[index];
+                    if (candidate != abandoned && candidate.liveRecords == 0) {
+                        candidate.top = 0;
+                        candidate.liveBytes = 0;
+                        active = candidate;
+                        activeIndex = index;
+                        break;
+                    }
+                }
+                if (active == null) {
+                    try {
+                        active = newSegment();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            long address = addressOf(activeIndex, active.top);
+            active.top += length;
+            active.liveRecords++;
+            active.liveBytes += length;
+            return address;
+        }
+    }
+    private Segment newSegment() throws IOException {
+        Segment[] current = segments;
+        Segment segment = new Segment(directory.resolve("segment-" + current.length + ".bin"), segmentBytes);
+        Segment[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = segment;
+        segments = grown;
+        activeIndex = current.length;
+        return segment;
+    }
+    private boolean isPendingRequest(long address) {
+        return TYPES[getByte(address, TYPE)].isRequest() && STATUSES[getByte(address, STATUS)] == NotificationStatus.PENDING;
+    }
+    private Notification read(long address) {
+        String sender = readString(address, 0);
+        String receiver = readString(address, 1);
+        String content = readString(address, 2);
+        String subject = readString(address, 3);
+        StoredNotification notification = new StoredNotification(address, sender, receiver,
+                TYPES[getByte(address, TYPE)], content, subject, getLong(address, TIMESTAMP),
+                STATUSES[getByte(address, STATUS)], getByte(address, READ) != 0);
+        notification.setId(getLong(address, ID));
+        notification.setRepeats(getInt(address, COUNT), getLong(address, LAST_SEEN));
+        return notification;
+    }
+    private String readString(long address, int field) {
+        ByteBuffer buffer = segmentOf(address).buffer;
+        int position = offsetOf(address) + STRINGS;
+        for (int i = 0; i < field; i++) {
+            position += 4 + buffer.getInt(position);
+        }
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    private long addressOf(int segmentIndex, int offset) {
+        return (long) segmentIndex * segmentBytes + offset;
+    }
+    private Segment segmentOf(long address) {
+        return segments[(int) (address / segmentBytes)];
+    }
+    private int offsetOf(long address) {
+        return (int) (address % segmentBytes);
+    }
+    private byte getByte(long address, int field) {
+        return segmentOf(address).buffer.get(offsetOf(address) + field);
+    }
+    private void putByte(long address, int field, byte value) {
+        segmentOf(address).buffer.put(offsetOf(address) + field, value);
+    }
+    private int getInt(long address, int field) {
+        return segmentOf(address).buffer.getInt(offsetOf(address) + field);
+    }
+    private long getLong(long address, int field) {
+        return segmentOf(address).buffer.getLong(offsetOf(address) + field);
+    }
+    private void putLong(long address, int field, long value) {
+        segmentOf(address).buffer.putLong(offsetOf(address) + field, value);
+    }
+    private long getSegmentCount() {
+        return segments.length;
+    }
+    private long getLiveBytes() {
+        synchronized (allocationLock) {
+            long live = 0;
+            for (Segment segment : segments) {
+                live += segment.liveBytes;
+            }
+            return live;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package server;
+import model.Notification;
+import model.NotificationType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+// Indexes pending follow and photo requests by receiver, sender, kind and file so responses resolve them directly.
+class PendingRequestIndex {
+    private static final class RequestKey {
+        private final String receiverID;
+        private final String senderID;
+        private final NotificationType kind;
+        private final String subject;
+        private final int hash;
+        RequestKey(String receiverID, String senderID, NotificationType kind, String subject) {
+            this.receiverID = receiverID;
+            this.senderID = senderID;
+            this.kind = kind;
+            this.subject = subject;
+            this.hash = Objects.hash(receiverID, senderID, kind, subject);
+        }
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RequestKey)) {
+                return false;
+            }
+            RequestKey key = (RequestKey) other;
+            return receiverID.equals(key.receiverID) && senderID.equals(key.senderID) &&
+                    kind == key.kind && subject.equals(key.subject);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    private final Map<RequestKey, List<Notification>> pending = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> perReceiver = new ConcurrentHashMap<>();
+    private final int maxPerReceiver;
+    private final ServerMetrics metrics;
+    PendingRequestIndex(int maxPerReceiver, ServerMetrics metrics) {
+        this.maxPerReceiver = maxPerReceiver;
+        this.metrics = metrics;
+        metrics.registerGauge("notifications.pending_requests", pending::size);
+    }
+    boolean reserve(Notification notification) {
+        boolean[] reserved = new boolean[1];
+        pending.compute(keyOf(notification), (key, requests) -> {
+            if (requests != null) {
+                return requests;
+            }
+            AtomicInteger count = perReceiver.computeIfAbsent(key.receiverID, receiver -> new AtomicInteger());
+            if (count.incrementAndGet() > maxPerReceiver) {
+                count.decrementAndGet();
+                return null;
+            }
+            reserved[0] = true;
+            return new ArrayList<>(1);
+        });
+        if (!reserved[0]) {
+            metrics.increment("notifications.duplicate_requests");
+        }
+        return reserved[0];
+    }
+    void add(Notification notification) {
+        if (!notification.isPendingRequest()) {
+            return;
+        }
+        pending.compute(keyOf(notification), (key, requests) -> {
+            List<Notification> updated = requests;
+            if (updated == null) {
+                perReceiver.computeIfAbsent(key.receiverID, receiver -> new AtomicInteger()).incrementAndGet();
+                updated = new ArrayList<>(1);
+            }
+            updated.add(notification);
+            return updated;
+        });
+    }
+    List<Notification> remove(String receiverID, String senderID, NotificationType kind, String subject) {
+        List<Notification> removed = pending.remove(new RequestKey(receiverID, senderID, kind, subject));
+        if (removed != null) {
+            perReceiver.computeIfPresent(receiverID, (receiver, count) -> count.decrementAndGet() == 0 ? null : count);
+        }
+        return removed;
+    }
+    private static RequestKey keyOf(Notification notification) {
+        return new RequestKey(notification.getReceiverID(), notification.getSenderID(),
+                notification.getNotificationType(), notification.getSubject());
+    }
+}
\ No newline at end of file
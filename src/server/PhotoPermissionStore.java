@@ -0,0 +1,443 @@
+package server;
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.logging.Logger;
+// Holds expiring photo ACLs per owner and file, expires them on a timer wheel and persists them in a compacted log.
+class PhotoPermissionStore {
+    private static final Logger logger = Logger.getLogger(PhotoPermissionStore.class.getName());
+    private static final String LOG_FILENAME = "PhotoPermissions.log";
+    private static final long TICK_MILLIS = Long.getLong("server.photos.expiryTickMillis", 1000L);
+    private static final int WHEEL_SLOTS = 512;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final byte GRANT_USER = 1;
+    private static final byte GRANT_FOLLOWERS = 2;
+    private static final byte GRANT_GROUP = 3;
+    private static final byte GROUP_ADD = 4;
+    private static final byte GROUP_REMOVE = 5;
+    private static final class PhotoKey {
+        private final String ownerID;
+        private final String fileName;
+        PhotoKey(String ownerID, String fileName) {
+            this.ownerID = ownerID;
+            this.fileName = fileName;
+        }
+        boolean isAllPhotos() {
+            return fileName == null;
+        }
+    }
+    private static final class Grant {
+        private final PhotoKey photo;
+        private final String requesterID;
+        private final String groupName;
+        private final long expiresAt;
+        private long rounds;
+        Grant(PhotoKey photo, String requesterID, String groupName, long expiresAt) {
+            this.photo = photo;
+            this.requesterID = requesterID;
+            this.groupName = groupName;
+            this.expiresAt = expiresAt;
+        }
+    }
+    private static final class PhotoAcl {
+        private final PhotoKey photo;
+        private final Map<String, Grant> users = new ConcurrentHashMap<>();
+        private final Map<String, Grant> groups = new ConcurrentHashMap<>();
+        private volatile Grant followers;
+        PhotoAcl(PhotoKey photo) {
+            this.photo = photo;
+        }
+        boolean isEmpty() {
+            return users.isEmpty() && groups.isEmpty() && followers == null;
+        }
+    }
+    private static final class OwnerAcls {
+        private final String ownerID;
+        private final PhotoAcl allPhotos;
+        private final Map<String, PhotoAcl> files = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> groups = new ConcurrentHashMap<>();
+        OwnerAcls(String ownerID) {
+            this.ownerID = ownerID;
+            this.allPhotos = new PhotoAcl(new PhotoKey(ownerID, null));
+        }
+        PhotoAcl aclFor(PhotoKey photo) {
+            return photo.isAllPhotos() ? allPhotos : files.get(photo.fileName);
+        }
+        boolean isEmpty() {
+            return allPhotos.isEmpty() && files.isEmpty() && groups.isEmpty();
+        }
+    }
+    private interface LogWrite {
+        void write(DataOutputStream out) throws IOException;
+    }
+    private final Path logPath;
+    private final BiPredicate<String, String> isFollowing;
+    private final ServerMetrics metrics;
+    private final Map<String, OwnerAcls> owners = new ConcurrentHashMap<>();
+    private final AtomicInteger liveGrants = new AtomicInteger();
+    private final List<List<Grant>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private final Object wheelLock = new Object();
+    private int cursor;
+    private long wheelTime;
+    private final Object logLock = new Object();
+    private DataOutputStream log;
+    private int logRecords;
+    private PhotoPermissionStore(Path dataDir, BiPredicate<String, String> isFollowing, ServerMetrics metrics) {
+        this.logPath = dataDir.resolve(LOG_FILENAME);
+        this.isFollowing = isFollowing;
+        this.metrics = metrics;
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.wheelTime = System.currentTimeMillis();
+    }
+    static PhotoPermissionStore open(Path dataDir, BiPredicate<String, String> isFollowing,
+                                     ScheduledExecutorService scheduler, ServerMetrics metrics) throws IOException {
+        PhotoPermissionStore store = new PhotoPermissionStore(dataDir, isFollowing, metrics);
+        store.replay();
+        synchronized (store.logLock) {
+            store.rewriteLog();
+        }
+        metrics.registerGauge("photos.grants", store.liveGrants::get);
+        scheduler.scheduleAtFixedRate(store::advanceWheel, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        logger.info("Loaded " + store.liveGrants.get() + " photo access grants");
+        return store;
+    }
+    void grant(String ownerID, String requesterID, String fileName, long ttlMillis) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        Grant grant = put(ownerID, requesterID, null, fileName, expiresAt, true);
+        schedule(grant);
+    }
+    void grantFollowers(String ownerID, String fileName, long ttlMillis) {
+        grant(ownerID, null, fileName, ttlMillis);
+    }
+    List<String> grantGroup(String ownerID, String groupName, String fileName, long ttlMillis) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        Grant grant;
+        List<String> members;
+        synchronized (logLock) {
+            OwnerAcls acls = owners.get(ownerID);
+            Set<String> group = acls == null ? null : acls.groups.get(groupName);
+            if (group == null) {
+                return null;
+            }
+            members = new ArrayList<>(group);
+            grant = put(ownerID, null, groupName, fileName, expiresAt, true);
+        }
+        schedule(grant);
+        return members;
+    }
+    int addToGroup(String ownerID, String groupName, String memberID) {
+        synchronized (logLock) {
+            int size = updateGroup(GROUP_ADD, ownerID, groupName, memberID);
+            persist(out -> appendMembership(out, GROUP_ADD, ownerID, groupName, memberID));
+            return size;
+        }
+    }
+    boolean removeFromGroup(String ownerID, String groupName, String memberID) {
+        synchronized (logLock) {
+            if (updateGroup(GROUP_REMOVE, ownerID, groupName, memberID) < 0) {
+                return false;
+            }
+            persist(out -> appendMembership(out, GROUP_REMOVE, ownerID, groupName, memberID));
+            return true;
+        }
+    }
+    boolean hasAccess(String ownerID, String requesterID, String fileName) {
+        OwnerAcls acls = owners.get(ownerID);
+        if (acls == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (allows(acls, acls.allPhotos, requesterID, now)) {
+            return true;
+        }
+        PhotoAcl acl = acls.files.get(fileName);
+        return acl != null && allows(acls, acl, requesterID, now);
+    }
+    void close() {
+        synchronized (logLock) {
+            if (log == null) {
+                return;
+            }
+            try {
+                log.close();
+            } catch (IOException e) {
+                logger.warning("Error closing photo permission log: " + e.getMessage());
+            }
+            log = null;
+        }
+    }
+    private boolean allows(OwnerAcls acls, PhotoAcl acl, String requesterID, long now) {
+        Grant grant = acl.users.get(requesterID);
+        if (grant != null && grant.expiresAt > now) {
+            return true;
+        }
+        if (!acl.groups.isEmpty()) {
+            for (Grant group : acl.groups.values()) {
+                Set<String> members = acls.groups.get(group.groupName);
+                if (group.expiresAt > now && members != null && members.contains(requesterID)) {
+                    return true;
+                }
+            }
+        }
+        Grant followers = acl.followers;
+        return followers != null && followers.expiresAt > now && isFollowing.test(requesterID, acl.photo.ownerID);
+    }
+    private Grant put(String ownerID, String requesterID, String groupName, String fileName, long expiresAt,
+                      boolean persist) {
+        synchronized (logLock) {
+            Grant[] added = new Grant[1];
+            owners.compute(ownerID, (owner, existing) -> {
+                OwnerAcls acls = existing != null ? existing : new OwnerAcls(owner);
+                added[0] = putLocked(acls, requesterID, groupName, fileName, expiresAt);
+                return acls;
+            });
+            if (persist) {
+                persist(out -> appendGrant(out, added[0]));
+            }
+            return added[0];
+        }
+    }
+    private Grant putLocked(OwnerAcls acls, String requesterID, String groupName, String fileName, long expiresAt) {
+        PhotoAcl acl = fileName == null ? acls.allPhotos :
+                acls.files.computeIfAbsent(fileName, file -> new PhotoAcl(new PhotoKey(acls.ownerID, file)));
+        Grant grant = new Grant(acl.photo, requesterID, groupName, expiresAt);
+        Grant replaced;
+        if (requesterID != null) {
+            replaced = acl.users.put(requesterID, grant);
+        } else if (groupName != null) {
+            replaced = acl.groups.put(groupName, grant);
+        } else {
+            replaced = acl.followers;
+            acl.followers = grant;
+        }
+        if (replaced == null) {
+            liveGrants.incrementAndGet();
+        }
+        return grant;
+    }
+    private int updateGroup(byte kind, String ownerID, String groupName, String memberID) {
+        int[] size = {-1};
+        owners.compute(ownerID, (owner, existing) -> {
+            OwnerAcls acls = existing != null ? existing : new OwnerAcls(owner);
+            if (kind == GROUP_ADD) {
+                Set<String> members = acls.groups.computeIfAbsent(groupName, group -> ConcurrentHashMap.newKeySet());
+                members.add(memberID);
+                size[0] = members.size();
+            } else {
+                acls.groups.computeIfPresent(groupName, (group, members) -> {
+                    if (members.remove(memberID)) {
+                        size[0] = members.size();
+                    }
+                    return members.isEmpty() ? null : members;
+                });
+            }
+            return acls.isEmpty() ? null : acls;
+        });
+        return size[0];
+    }
+    private void remove(Grant grant) {
+        PhotoKey photo = grant.photo;
+        owners.computeIfPresent(photo.ownerID, (owner, acls) -> {
+            PhotoAcl acl = acls.aclFor(photo);
+            if (acl == null) {
+                return acls;
+            }
+            boolean removed;
+            if (grant.requesterID != null) {
+                removed = acl.users.remove(grant.requesterID, grant);
+            } else if (grant.groupName != null) {
+                removed = acl.groups.remove(grant.groupName, grant);
+            } else {
+                removed = acl.followers == grant;
+                if (removed) {
+                    acl.followers = null;
+                }
+            }
+            if (removed) {
+                liveGrants.decrementAndGet();
+                metrics.increment("photos.grants_expired");
+            }
+            if (!photo.isAllPhotos() && acl.isEmpty()) {
+                acls.files.remove(photo.fileName);
+            }
+            return acls.isEmpty() ? null : acls;
+        });
+    }
+    private void schedule(Grant grant) {
+        synchronized (wheelLock) {
+            long ticks = Math.max(1, (grant.expiresAt - wheelTime + TICK_MILLIS - 1) / TICK_MILLIS);
+            grant.rounds = (ticks - 1) / WHEEL_SLOTS;
+            wheel.get((int) ((cursor + ticks) % WHEEL_SLOTS)).add(grant);
+        }
+    }
+    private void advanceWheel() {
+        long now = System.currentTimeMillis();
+        List<Grant> due = new ArrayList<>();
+        synchronized (wheelLock) {
+            while (wheelTime + TICK_MILLIS <= now) {
+                wheelTime += TICK_MILLIS;
+                cursor = (cursor + 1) % WHEEL_SLOTS;
+                List<Grant> slot = wheel.get(cursor);
+                int kept = 0;
+                for (Grant grant : slot) {
+                    if (grant.rounds > 0) {
+                        grant.rounds--;
+                        slot.set(kept++, grant);
+                    } else {
+                        due.add(grant);
+                    }
+                }
+                slot.subList(kept, slot.size()).clear();
+            }
+        }
+        for (Grant grant : due) {
+            if (grant.expiresAt > now) {
+                schedule(grant);
+            } else {
+                remove(grant);
+            }
+        }
+    }
+    private void replay() throws IOException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+            int kind;
+            while ((kind = in.read()) >= 0) {
+                try {
+                    replayRecord((byte) kind, in, now);
+                } catch (EOFException | UTFDataFormatException e) {
+                    logger.warning("Ignoring torn photo permission log tail after " + records + " records");
+                    break;
+                }
+                records++;
+            }
+        }
+        logger.info("Replayed " + records + " photo permission log records");
+    }
+    private void replayRecord(byte kind, DataInputStream in, long now) throws IOException {
+        String ownerID = in.readUTF();
+        switch (kind) {
+            case GRANT_USER:
+            case GRANT_FOLLOWERS:
+            case GRANT_GROUP:
+                String fileName = in.readBoolean() ? null : in.readUTF();
+                String audience = kind == GRANT_FOLLOWERS ? null : in.readUTF();
+                long expiresAt = in.readLong();
+                if (expiresAt <= now) {
+                    return;
+                }
+                schedule(put(ownerID, kind == GRANT_USER ? audience : null, kind == GRANT_GROUP ? audience : null,
+                        fileName, expiresAt, false));
+                return;
+            case GROUP_ADD:
+            case GROUP_REMOVE:
+                updateGroup(kind, ownerID, in.readUTF(), in.readUTF());
+                return;
+            default:
+                throw new IOException("Unknown photo permission log record " + kind);
+        }
+    }
+    private void persist(LogWrite write) {
+        if (log == null) {
+            return;
+        }
+        try {
+            write.write(log);
+            log.flush();
+            logRecords++;
+            if (logRecords > COMPACT_MIN_RECORDS && logRecords > 2 * (liveGrants.get() + groupMemberships())) {
+                rewriteLog();
+            }
+        } catch (IOException e) {
+            logger.severe("Error persisting photo permissions: " + e.getMessage());
+        }
+    }
+    private static void appendGrant(DataOutputStream out, Grant grant) throws IOException {
+        String audience = grant.requesterID != null ? grant.requesterID : grant.groupName;
+        out.writeByte(grant.requesterID != null ? GRANT_USER : grant.groupName != null ? GRANT_GROUP : GRANT_FOLLOWERS);
+        writePhoto(out, grant.photo.ownerID, grant.photo.fileName);
+        if (audience != null) {
+            out.writeUTF(audience);
+        }
+        out.writeLong(grant.expiresAt);
+    }
+    private static void appendMembership(DataOutputStream out, byte kind, String ownerID, String groupName,
+                                         String memberID) throws IOException {
+        out.writeByte(kind);
+        out.writeUTF(ownerID);
+        out.writeUTF(groupName);
+        out.writeUTF(memberID);
+    }
+    private static void writePhoto(DataOutputStream out, String ownerID, String fileName) throws IOException {
+        out.writeUTF(ownerID);
+        out.writeBoolean(fileName == null);
+        if (fileName != null) {
+            out.writeUTF(fileName);
+        }
+    }
+    private int groupMemberships() {
+        int memberships = 0;
+        for (OwnerAcls acls : owners.values()) {
+            for (Set<String> members : acls.groups.values()) {
+                memberships += members.size();
+            }
+        }
+        return memberships;
+    }
+    private void rewriteLog() throws IOException {
+        Path temp = logPath.resolveSibling(LOG_FILENAME + ".tmp");
+        int records = 0;
+        long now = System.currentTimeMillis();
+        try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (OwnerAcls acls : owners.values()) {
+                for (Map.Entry<String, Set<String>> group : acls.groups.entrySet()) {
+                    for (String memberID : group.getValue()) {
+                        appendMembership(snapshot, GROUP_ADD, acls.ownerID, group.getKey(), memberID);
+                        records++;
+                    }
+                }
+                List<PhotoAcl> photoAcls = new ArrayList<>(acls.files.values());
+                photoAcls.add(acls.allPhotos);
+                for (PhotoAcl acl : photoAcls) {
+                    Grant followers = acl.followers;
+                    if (followers != null && followers.expiresAt > now) {
+                        appendGrant(snapshot, followers);
+                        records++;
+                    }
+                    List<Grant> grants = new ArrayList<>(acl.users.values());
+                    grants.addAll(acl.groups.values());
+                    for (Grant grant : grants) {
+                        if (grant.expiresAt > now) {
+                            appendGrant(snapshot, grant);
+                            records++;
+                        }
+                    }
+                }
+            }
+        }
+        try {
+            if (log != null) {
+                log.close();
+            }
+            Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logRecords = records;
+        } finally {
+            log = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(logPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,207 @@
+package server;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+// Multiplexes idle client sessions over a few selector threads and hands complete commands to workers.
+class SelectorFrontEnd {
+    private static final Logger logger = Logger.getLogger(SelectorFrontEnd.class.getName());
+    private static final int IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFERRED_RETRY_MILLIS = 10;
+    private final SocialNetworkServer server;
+    private final ExecutorService workers;
+    private final IoLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    SelectorFrontEnd(SocialNetworkServer server, ExecutorService workers) throws IOException {
+        this.server = server;
+        this.workers = workers;
+        this.loops = new IoLoop[IO_THREADS];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(i);
+        }
+    }
+    void start() {
+        for (IoLoop loop : loops) {
+            Thread thread = new Thread(loop, "selector-io-" + loop.index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        logger.info("Selector front end started with " + loops.length + " I/O threads");
+    }
+    void register(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        IoLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        NioSession session = new NioSession(channel, loop);
+        ClientHandler handler = new ClientHandler(session, server);
+        handler.open();
+        session.setHandler(handler);
+        loop.submit(() -> {
+            try {
+                channel.register(loop.selector, SelectionKey.OP_READ, session);
+            } catch (ClosedChannelException e) {
+                handler.closeConnection();
+            }
+        });
+    }
+    void shutdown() {
+        for (IoLoop loop : loops) {
+            loop.running = false;
+            loop.selector.wakeup();
+        }
+    }
+    private void dispatch(NioSession session) {
+        try {
+            workers.execute(() -> drain(session));
+        } catch (RejectedExecutionException e) {
+            session.getLoop().defer(session);
+        }
+    }
+    private void drain(NioSession session) {
+        ClientHandler handler = session.getHandler();
+        boolean open = true;
+        try {
+            while (session.hasCompleteCommand()) {
+                if (!handler.processNextCommand()) {
+                    open = false;
+                    break;
+                }
+            }
+            if (open && session.isEndOfStream()) {
+                open = false;
+            }
+            handler.flushOutput();
+        } catch (IOException e) {
+            logger.severe("Error handling client connection: " + e.getMessage());
+            open = false;
+        } catch (RuntimeException e) {
+            logger.severe("Unexpected error handling client command: " + e.getMessage());
+            open = false;
+        }
+        if (!open) {
+            handler.closeConnection();
+            return;
+        }
+        if (session.finishBatch()) {
+            dispatch(session);
+        }
+    }
+    class IoLoop implements Runnable {
+        private final int index;
+        private final Selector selector;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<NioSession> deferred = new ArrayDeque<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private volatile boolean running = true;
+        IoLoop(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+        }
+        void submit(Runnable task) {
+            pending.add(task);
+            selector.wakeup();
+        }
+        void requestWrite(NioSession session) {
+            submit(() -> updateInterest(session, SelectionKey.OP_WRITE, true));
+        }
+        void resumeReading(NioSession session) {
+            submit(() -> updateInterest(session, SelectionKey.OP_READ, true));
+        }
+        void defer(NioSession session) {
+            submit(() -> {
+                updateInterest(session, SelectionKey.OP_READ, false);
+                deferred.add(session);
+            });
+        }
+        private void retryDeferred() {
+            NioSession session;
+            while ((session = deferred.peek()) != null) {
+                NioSession next = session;
+                try {
+                    workers.execute(() -> drain(next));
+                } catch (RejectedExecutionException e) {
+                    return;
+                }
+                deferred.poll();
+                if (!next.isInboundFull()) {
+                    updateInterest(next, SelectionKey.OP_READ, true);
+                }
+            }
+        }
+        private void updateInterest(NioSession session, int op, boolean enable) {
+            SelectionKey key = session.getChannel().keyFor(selector);
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            key.interestOps(enable ? key.interestOps() | op : key.interestOps() & ~op);
+        }
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    if (deferred.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.select(DEFERRED_RETRY_MILLIS);
+                    }
+                    Runnable task;
+                    while ((task = pending.poll()) != null) {
+                        task.run();
+                    }
+                    retryDeferred();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioSession session = (NioSession) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key, session);
+                            }
+                            if (key.isValid() && key.isWritable() && session.flushOutbound()) {
+                                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            key.cancel();
+                            if (session.markEndOfStream()) {
+                                dispatch(session);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.severe("Selector error: " + e.getMessage());
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.severe("Error closing selector: " + e.getMessage());
+            }
+        }
+        private void read(SelectionKey key, NioSession session) throws IOException {
+            readBuffer.clear();
+            int count = session.getChannel().read(readBuffer);
+            if (count == -1) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                if (session.markEndOfStream()) {
+                    dispatch(session);
+                }
+                return;
+            }
+            readBuffer.flip();
+            if (session.append(readBuffer)) {
+                dispatch(session);
+            }
+            if (session.isInboundFull()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+    }
+}
\ No newline at end of file
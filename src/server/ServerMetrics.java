@@ -0,0 +1,38 @@
+package server;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+// Collects named server counters and gauges and reports them to the log.
+public class ServerMetrics {
+    private static final Logger logger = Logger.getLogger(ServerMetrics.class.getName());
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    public void increment(String name) {
+        add(name, 1);
+    }
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+    public void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+        return values;
+    }
+    void startReporting(ScheduledExecutorService scheduler, long periodSeconds) {
+        scheduler.scheduleAtFixedRate(() -> logger.info("Server metrics: " + snapshot()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+}
\ No newline at end of file
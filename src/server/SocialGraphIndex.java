@@ -0,0 +1,484 @@
+package server;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+// Keeps the social graph resident in memory and persists every change through an append-only log compacted in the background.
+public class SocialGraphIndex {
+    private static final Logger logger = Logger.getLogger(SocialGraphIndex.class.getName());
+    public static final String WAL_FILENAME = "SocialGraph.wal";
+    public static final String SNAPSHOT_FILENAME = "SocialGraph.snap";
+    private static final int SNAPSHOT_MAGIC = 0x53475350;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 24;
+    private static final int SEGMENT_RECORDS = Integer.getInteger("server.graph.segmentRecords", 1000);
+    private static final int LOCK_STRIPES = 64;
+    private static final String USER_RECORD = "USER";
+    private static final String FOLLOW_RECORD = "FOLLOW";
+    private static final String UNFOLLOW_RECORD = "UNFOLLOW";
+    private final Path dataDir;
+    private final Path snapshotPath;
+    private final Path legacySnapshotPath;
+    private final Path walPath;
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private Executor compactor;
+    private final UserIdTable ids = new UserIdTable();
+    private final BitSet registered = new BitSet();
+    private volatile BloomFilter userFilter = new BloomFilter(1024);
+    private int userCount;
+    private final AdjacencyStore followers = new AdjacencyStore();
+    private final AdjacencyStore following = new AdjacencyStore();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    private final Object logLock = new Object();
+    private final Object flushLock = new Object();
+    private BufferedWriter wal;
+    private int walRecords;
+    private long appendedRecords;
+    private long flushedRecords;
+    private long logFlushes;
+    private long nextSegment = 1;
+    private SocialGraphIndex(Path dataDir) {
+        this.dataDir = dataDir;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.snapshotPath = dataDir.resolve(SNAPSHOT_FILENAME);
+        this.legacySnapshotPath = dataDir.resolve(FileManager.SOCIAL_GRAPH_FILENAME);
+        this.walPath = dataDir.resolve(WAL_FILENAME);
+    }
+    public static SocialGraphIndex open(Path dataDir, Executor compactor) throws IOException {
+        SocialGraphIndex index = load(dataDir);
+        index.compactor = compactor;
+        List<Path> segments = index.sealedSegments();
+        boolean compact = index.walRecords > 0 || !segments.isEmpty() || !Files.exists(index.snapshotPath);
+        if (compact) {
+            index.writeSnapshot();
+            index.deleteSegments(segments);
+            index.walRecords = 0;
+        }
+        index.openWal(compact ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+        return index;
+    }
+    public static SocialGraphIndex load(Path dataDir) throws IOException {
+        SocialGraphIndex index = new SocialGraphIndex(dataDir);
+        index.loadSnapshot();
+        for (Path segment : index.sealedSegments()) {
+            index.replay(segment);
+        }
+        index.replay(index.walPath);
+        logger.info("Loaded social graph with " + index.userCount + " users after replaying " +
+                index.walRecords + " log records");
+        return index;
+    }
+    private void loadSnapshot() throws IOException {
+        if (Files.exists(snapshotPath)) {
+            loadBinarySnapshot();
+        } else if (Files.exists(legacySnapshotPath)) {
+            loadTextSnapshot();
+        }
+    }
+    private void loadBinarySnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SNAPSHOT_HEADER_BYTES || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Social graph snapshot has an invalid header");
+            }
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported social graph snapshot version " + version);
+            }
+            long bodyLength = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (bodyLength != buffer.remaining()) {
+                throw new IOException("Social graph snapshot is truncated");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("Social graph snapshot failed checksum validation");
+            }
+            int names = buffer.getInt();
+            byte[] name = new byte[256];
+            for (int id = 0; id < names; id++) {
+                int length = buffer.getInt();
+                if (length > name.length) {
+                    name = new byte[length];
+                }
+                buffer.get(name, 0, length);
+                ids.intern(new String(name, 0, length, StandardCharsets.UTF_8));
+            }
+            long[] words = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(words);
+            buffer.position(buffer.position() + words.length * Long.BYTES);
+            registered.or(BitSet.valueOf(words));
+            userCount = registered.cardinality();
+            rebuildUserFilter();
+            followers.readFrom(buffer);
+            following.readFrom(buffer);
+        }
+    }
+    private void loadTextSnapshot() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(legacySnapshotPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts[0].isEmpty()) {
+                    continue;
+                }
+                applyUser(parts[0]);
+                for (int i = 1; i < parts.length; i++) {
+                    applyFollow(parts[i], parts[0]);
+                }
+            }
+        }
+    }
+    private void replay(Path log) throws IOException {
+        if (!Files.exists(log)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 2 && parts[0].equals(USER_RECORD)) {
+                    applyUser(parts[1]);
+                } else if (parts.length == 3 && parts[0].equals(FOLLOW_RECORD)) {
+                    applyFollow(parts[1], parts[2]);
+                } else if (parts.length == 3 && parts[0].equals(UNFOLLOW_RECORD)) {
+                    applyUnfollow(parts[1], parts[2]);
+                } else {
+                    logger.warning("Skipping malformed social graph log record: " + line);
+                    continue;
+                }
+                walRecords++;
+            }
+        }
+    }
+    private List<Path> sealedSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        String prefix = WAL_FILENAME + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataDir, prefix + "*")) {
+            for (Path segment : stream) {
+                if (segment.getFileName().toString().substring(prefix.length()).matches("\\d+")) {
+                    segments.add(segment);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(this::segmentNumber));
+        return segments;
+    }
+    private long segmentNumber(Path segment) {
+        return Long.parseLong(segment.getFileName().toString().substring(WAL_FILENAME.length() + 1));
+    }
+    private void deleteSegments(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+    private void openWal(StandardOpenOption mode) throws IOException {
+        wal = Files.newBufferedWriter(walPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    }
+    public boolean containsUser(String userID) {
+        if (!userFilter.mightContain(userID)) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            int id = ids.find(userID);
+            return id >= 0 && registered.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public boolean isFollowing(String followerID, String followedID) {
+        lock.readLock().lock();
+        try {
+            return isFollowingLocked(followerID, followedID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public List<String> getFollowers(String userID) {
+        lock.readLock().lock();
+        try {
+            return names(followers, userID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public List<String> getFollowing(String userID) {
+        lock.readLock().lock();
+        try {
+            return names(following, userID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public boolean addUser(String userID) throws IOException {
+        ReentrantLock stripe = stripes[stripeIndex(userID)];
+        stripe.lock();
+        try {
+            if (containsUser(userID)) {
+                return false;
+            }
+            log(USER_RECORD + " " + userID);
+            lock.writeLock().lock();
+            try {
+                applyUser(userID);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+    public boolean addFollow(String followerID, String followedID) throws IOException {
+        int first = stripeIndex(followerID);
+        int second = stripeIndex(followedID);
+        lockStripes(first, second);
+        try {
+            if (isFollowing(followerID, followedID)) {
+                return false;
+            }
+            log(FOLLOW_RECORD + " " + followerID + " " + followedID);
+            lock.writeLock().lock();
+            try {
+                applyFollow(followerID, followedID);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            unlockStripes(first, second);
+        }
+    }
+    public boolean removeFollow(String followerID, String followedID) throws IOException {
+        int first = stripeIndex(followerID);
+        int second = stripeIndex(followedID);
+        lockStripes(first, second);
+        try {
+            if (!isFollowing(followerID, followedID)) {
+                return false;
+            }
+            log(UNFOLLOW_RECORD + " " + followerID + " " + followedID);
+            lock.writeLock().lock();
+            try {
+                applyUnfollow(followerID, followedID);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            unlockStripes(first, second);
+        }
+    }
+    private static int stripeIndex(String userID) {
+        int hash = userID.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    private void lockStripes(int first, int second) {
+        stripes[Math.min(first, second)].lock();
+        if (first != second) {
+            stripes[Math.max(first, second)].lock();
+        }
+    }
+    private void unlockStripes(int first, int second) {
+        stripes[first].unlock();
+        if (first != second) {
+            stripes[second].unlock();
+        }
+    }
+    private boolean isFollowingLocked(String followerID, String followedID) {
+        int follower = ids.find(followerID);
+        int followed = ids.find(followedID);
+        return follower >= 0 && followed >= 0 && following.contains(follower, followed);
+    }
+    private List<String> names(AdjacencyStore store, String userID) {
+        List<String> result = new ArrayList<>();
+        int id = ids.find(userID);
+        if (id >= 0) {
+            store.forEach(id, neighbour -> result.add(ids.name(neighbour)));
+        }
+        return result;
+    }
+    private void applyUser(String userID) {
+        register(ids.intern(userID));
+    }
+    private void register(int id) {
+        if (registered.get(id)) {
+            return;
+        }
+        registered.set(id);
+        userCount++;
+        if (userCount <= userFilter.capacity()) {
+            userFilter.add(ids.name(id));
+        } else {
+            rebuildUserFilter();
+        }
+    }
+    private void rebuildUserFilter() {
+        BloomFilter filter = new BloomFilter(Math.max(1024, userCount * 2));
+        for (int user = registered.nextSetBit(0); user >= 0; user = registered.nextSetBit(user + 1)) {
+            filter.add(ids.name(user));
+        }
+        userFilter = filter;
+    }
+    private void applyFollow(String followerID, String followedID) {
+        int follower = ids.intern(followerID);
+        int followed = ids.intern(followedID);
+        register(followed);
+        followers.add(followed, follower);
+        following.add(follower, followed);
+    }
+    private void applyUnfollow(String followerID, String followedID) {
+        int follower = ids.find(followerID);
+        int followed = ids.find(followedID);
+        if (follower >= 0 && followed >= 0) {
+            followers.remove(followed, follower);
+            following.remove(follower, followed);
+        }
+    }
+    private void log(String record) throws IOException {
+        long sequence;
+        synchronized (logLock) {
+            if (wal == null) {
+                throw new IOException("Social graph log is not open for writing");
+            }
+            wal.write(record);
+            wal.newLine();
+            sequence = ++appendedRecords;
+            walRecords++;
+            rotateIfDue();
+        }
+        synchronized (flushLock) {
+            if (flushedRecords >= sequence) {
+                return;
+            }
+            long flushed;
+            synchronized (logLock) {
+                flushed = appendedRecords;
+                if (wal != null) {
+                    wal.flush();
+                }
+            }
+            flushedRecords = flushed;
+            logFlushes++;
+        }
+    }
+    long getLogRecords() {
+        synchronized (logLock) {
+            return appendedRecords;
+        }
+    }
+    long getLogFlushes() {
+        synchronized (flushLock) {
+            return logFlushes;
+        }
+    }
+    private void rotateIfDue() throws IOException {
+        if (walRecords < SEGMENT_RECORDS) {
+            return;
+        }
+        wal.close();
+        Files.move(walPath, dataDir.resolve(WAL_FILENAME + "." + nextSegment++));
+        openWal(StandardOpenOption.TRUNCATE_EXISTING);
+        walRecords = 0;
+        if (compacting.compareAndSet(false, true)) {
+            compactor.execute(this::compactSegments);
+        }
+    }
+    private void compactSegments() {
+        try {
+            synchronized (snapshotLock) {
+                List<Path> segments;
+                while (!(segments = sealedSegments()).isEmpty()) {
+                    SocialGraphIndex merged = new SocialGraphIndex(dataDir);
+                    merged.loadSnapshot();
+                    for (Path segment : segments) {
+                        merged.replay(segment);
+                    }
+                    merged.writeSnapshot();
+                    deleteSegments(segments);
+                    logger.info("Compacted " + segments.size() + " social graph log segments into the snapshot");
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("Error compacting social graph log: " + e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+    }
+    private void writeSnapshot() throws IOException {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(SNAPSHOT_HEADER_BYTES);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum), 64 * 1024));
+            out.writeInt(ids.size());
+            for (int id = 0; id < ids.size(); id++) {
+                byte[] name = ids.name(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            long[] words = registered.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+            followers.writeTo(out);
+            following.writeTo(out);
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION)
+                    .putLong(channel.position() - SNAPSHOT_HEADER_BYTES).putLong(checksum.getValue()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Wrote social graph snapshot with " + userCount + " users");
+    }
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            synchronized (logLock) {
+                if (wal == null) {
+                    return;
+                }
+                wal.close();
+                wal = null;
+            }
+            synchronized (snapshotLock) {
+                List<Path> segments = sealedSegments();
+                if (walRecords > 0 || !segments.isEmpty()) {
+                    writeSnapshot();
+                    deleteSegments(segments);
+                    Files.deleteIfExists(walPath);
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("Error closing social graph log: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
\ No newline at end of file
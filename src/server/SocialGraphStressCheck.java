@@ -0,0 +1,128 @@
+package server;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+// Hammers the striped social graph with overlapping registrations, follows and unfollows, then checks the result.
+public class SocialGraphStressCheck {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 40000;
+        Path dataDir = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("graph-stress");
+        ExecutorService compactor = Executors.newSingleThreadExecutor();
+        SocialGraphIndex graph = SocialGraphIndex.open(dataDir, compactor);
+        List<String> failures = new ArrayList<>();
+        AtomicIntegerArray registrations = new AtomicIntegerArray(users);
+        AtomicIntegerArray edges = new AtomicIntegerArray(users * users);
+        AtomicLong ioErrors = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int user = 0; user < users; user++) {
+                        if (graph.addUser(userName(user))) {
+                            registrations.incrementAndGet(user);
+                        }
+                    }
+                    for (int i = 0; i < operations / threads; i++) {
+                        int follower = random.nextInt(users);
+                        int followed = random.nextInt(users);
+                        if (follower == followed) {
+                            continue;
+                        }
+                        int pair = follower * users + followed;
+                        if (random.nextInt(4) == 0) {
+                            if (graph.removeFollow(userName(follower), userName(followed))) {
+                                edges.decrementAndGet(pair);
+                            }
+                        } else if (graph.addFollow(userName(follower), userName(followed))) {
+                            edges.incrementAndGet(pair);
+                        }
+                    }
+                } catch (IOException e) {
+                    ioErrors.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (ioErrors.get() > 0) {
+            failures.add(ioErrors.get() + " threads failed with an I/O error");
+        }
+        Set<String> expected = new HashSet<>();
+        for (int user = 0; user < users; user++) {
+            if (registrations.get(user) != 1) {
+                failures.add(userName(user) + " was registered " + registrations.get(user) + " times");
+            }
+            for (int other = 0; other < users; other++) {
+                int count = edges.get(user * users + other);
+                if (count != 0 && count != 1) {
+                    failures.add(userName(user) + " -> " + userName(other) + " was created " + count + " more times than removed");
+                } else if (count == 1) {
+                    expected.add(userName(user) + " " + userName(other));
+                }
+            }
+        }
+        compare("live following index", following(graph, users), expected, failures);
+        compare("live follower index", followers(graph, users), expected, failures);
+        long logRecords = graph.getLogRecords();
+        long logFlushes = graph.getLogFlushes();
+        graph.close();
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+        SocialGraphIndex reloaded = SocialGraphIndex.load(dataDir);
+        compare("graph reloaded from disk", following(reloaded, users), expected, failures);
+        for (String failure : failures) {
+            System.out.println("FAIL: " + failure);
+        }
+        System.out.println((failures.isEmpty() ? "OK: " : "FAILED: ") + expected.size() + " edges after " +
+                operations + " operations on " + threads + " threads over " + users + " users in " + elapsedMillis + " ms, " +
+                logRecords + " log records in " + logFlushes + " flushes");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+    private static String userName(int user) {
+        return "stress" + user;
+    }
+    private static Set<String> following(SocialGraphIndex graph, int users) {
+        Set<String> found = new HashSet<>();
+        for (int user = 0; user < users; user++) {
+            for (String followed : graph.getFollowing(userName(user))) {
+                found.add(userName(user) + " " + followed);
+            }
+        }
+        return found;
+    }
+    private static Set<String> followers(SocialGraphIndex graph, int users) {
+        Set<String> found = new HashSet<>();
+        for (int user = 0; user < users; user++) {
+            for (String follower : graph.getFollowers(userName(user))) {
+                found.add(follower + " " + userName(user));
+            }
+        }
+        return found;
+    }
+    private static void compare(String source, Set<String> actual, Set<String> expected, List<String> failures) {
+        if (actual.equals(expected)) {
+            return;
+        }
+        Set<String> missing = new HashSet<>(expected);
+        missing.removeAll(actual);
+        Set<String> extra = new HashSet<>(actual);
+        extra.removeAll(expected);
+        failures.add(source + " is missing " + missing.size() + " edges and has " + extra.size() + " unexpected edges");
+    }
+}
\ No newline at end of file
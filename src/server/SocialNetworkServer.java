@@ -1,33 +1,144 @@
 package server;
 import model.Notification;
+import model.NotificationStatus;
+import model.NotificationType;
+import protocol.FrameWriter;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.*;
 // Main server managing clients and requests.
 public class SocialNetworkServer {
     private static final int MAX_THREADS = 8;
+    private static final int MAX_POOL_SESSIONS = Integer.getInteger("server.threadPool.maxSessions", 256);
+    private static final long IDLE_WORKER_SECONDS = 60;
+    private static final int MAX_SELECTOR_SESSIONS = 10000;
+    private static final int SELECTOR_WORKERS = Integer.getInteger("server.selector.workers", 32);
+    private static final int SELECTOR_WORK_QUEUE = Integer.getInteger("server.selector.workQueue", 1024);
+    private static final int MAX_VIRTUAL_SESSIONS = 50000;
+    private static final int ADMISSION_QUEUE_DEPTH = Integer.getInteger("server.admission.queueDepth", 64);
+    private static final long ADMISSION_WAIT_MS = Long.getLong("server.admission.waitMillis", 2000L);
+    private static final long METRICS_REPORT_SECONDS = 60;
+    private static final int MAX_NOTIFICATIONS_PER_USER = Integer.getInteger("server.notifications.maxPerUser", 500);
+    private static final int MAX_PENDING_REQUESTS_PER_USER = Integer.getInteger("server.notifications.maxPendingPerUser", 500);
+    private static final long NOTIFICATION_MAX_AGE_HOURS = Long.getLong("server.notifications.maxAgeHours", 24L * 30);
+    private static final long NOTIFICATION_COALESCE_MINUTES = Long.getLong("server.notifications.coalesceWindowMinutes", 60L);
+    private static final int PUSH_QUEUE_CAPACITY = Integer.getInteger("server.notifications.pushQueue", 256);
+    private static final int PUSH_THREADS = 2;
+    private static final String NOTIFICATION_STORE = System.getProperty("server.notifications.store", "heap");
+    private static final int OFFHEAP_SEGMENT_BYTES = Integer.getInteger("server.notifications.offheap.segmentBytes", 64 << 20);
+    private static final int FANOUT_LANES = Integer.getInteger("server.fanout.lanes", 4);
+    private static final int FANOUT_QUEUE_DEPTH = Integer.getInteger("server.fanout.queueDepth", 1024);
+    private static final int FANOUT_BATCH_SIZE = Integer.getInteger("server.fanout.batchSize", 256);
+    private static final long PHOTO_GRANT_TTL_MINUTES = Long.getLong("server.photos.grantTtlMinutes", 24L * 60);
     private static final String SRC_FOLDER = "src";
     private static final String DATA_FOLDER = SRC_FOLDER + File.separator + "data";
-    private static final String SOCIAL_GRAPH_FILENAME = "SocialGraph.txt";
-    private Map<String, List<Notification>> clientNotifications;
-    private Map<String, Set<String>> photoPermissions;
     private static final Logger logger = Logger.getLogger(SocialNetworkServer.class.getName());
     private int port;
     private ServerSocket serverSocket;
     private ExecutorService threadPool;
-    private boolean running;
+    private final ExecutionMode executionMode;
+    private ServerSocketChannel serverChannel;
+    private SelectorFrontEnd selectorFrontEnd;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService graphCompactor;
+    private final ExecutorService notificationPusher;
+    private final FanOutExecutor fanOut;
+    private final ServerMetrics metrics;
+    private final AdmissionQueue admissionQueue;
+    private final NotificationRetention notificationRetention;
+    private final NotificationStore notificationStore;
+    private final NotificationCoalescer notificationCoalescer;
+    private final NotificationJournal notificationJournal;
+    private final PendingRequestIndex pendingRequests;
+    private final Map<String, Set<NotificationSubscriber>> notificationSubscribers = new ConcurrentHashMap<>();
+    private final AtomicLong nextNotificationId = new AtomicLong(1);
+    private SocialGraphIndex socialGraph;
+    private PhotoPermissionStore photoPermissions;
+    private volatile boolean running;
     private Map<String, ClientInfo> clientCatalog;
     private final Object catalogLock = new Object();
     public SocialNetworkServer(int port) {
+        this(port, ExecutionMode.THREAD_POOL);
+    }
+    public SocialNetworkServer(int port, ExecutionMode executionMode) {
         this.port = port;
+        this.executionMode = executionMode;
         this.clientCatalog = new ConcurrentHashMap<>();
-        this.threadPool = Executors.newFixedThreadPool(MAX_THREADS);
+        this.threadPool = createThreadPool(executionMode, maxSessions());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "server-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.graphCompactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "social-graph-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.notificationPusher = Executors.newFixedThreadPool(PUSH_THREADS, r -> {
+            Thread thread = new Thread(r, "notification-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.metrics = new ServerMetrics();
+        this.admissionQueue = new AdmissionQueue(maxSessions(), ADMISSION_QUEUE_DEPTH, ADMISSION_WAIT_MS,
+                scheduler, metrics);
+        this.notificationCoalescer = new NotificationCoalescer(Duration.ofMinutes(NOTIFICATION_COALESCE_MINUTES), metrics);
+        this.notificationRetention = new NotificationRetention(MAX_NOTIFICATIONS_PER_USER,
+                Duration.ofHours(NOTIFICATION_MAX_AGE_HOURS), metrics, notificationCoalescer::forget);
+        this.notificationStore = openNotificationStore();
+        this.pendingRequests = new PendingRequestIndex(MAX_PENDING_REQUESTS_PER_USER, metrics);
+        this.fanOut = new FanOutExecutor(FANOUT_LANES, FANOUT_QUEUE_DEPTH, FANOUT_BATCH_SIZE, metrics);
+        this.notificationJournal = new NotificationJournal(Paths.get(DATA_FOLDER, "notifications"),
+                this::forEachNotification, metrics);
         this.running = false;
-        this.clientNotifications = new ConcurrentHashMap<>();
-        this.photoPermissions = new ConcurrentHashMap<>();
+    }
+    private NotificationStore openNotificationStore() {
+        if ("offheap".equals(NOTIFICATION_STORE)) {
+            try {
+                return new OffHeapNotificationStore(Paths.get(DATA_FOLDER, "notifications", "store"),
+                        OFFHEAP_SEGMENT_BYTES, notificationRetention, scheduler, metrics);
+            } catch (IOException e) {
+                logger.severe("Error opening off-heap notification store, keeping notifications on heap: " + e.getMessage());
+            }
+        } else if (!"heap".equals(NOTIFICATION_STORE)) {
+            logger.warning("Unknown notification store " + NOTIFICATION_STORE + "; keeping notifications on heap");
+        }
+        return new HeapNotificationStore(notificationRetention);
+    }
+    private static ExecutorService createThreadPool(ExecutionMode mode, int sessionCapacity) {
+        if (mode != ExecutionMode.VIRTUAL_THREAD) {
+            boolean selector = mode == ExecutionMode.SELECTOR;
+            int workers = selector ? SELECTOR_WORKERS : Math.max(MAX_THREADS, sessionCapacity);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, IDLE_WORKER_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(selector ? SELECTOR_WORK_QUEUE : sessionCapacity));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warning("Virtual threads are not available on this JVM; using a cached platform thread pool instead");
+            return Executors.newCachedThreadPool();
+        }
+    }
+    private int maxSessions() {
+        switch (executionMode) {
+            case SELECTOR:
+                return MAX_SELECTOR_SESSIONS;
+            case VIRTUAL_THREAD:
+                return MAX_VIRTUAL_SESSIONS;
+            default:
+                return MAX_POOL_SESSIONS;
+        }
     }
     private void initializeFolderStructure() {
         try {
@@ -40,121 +151,112 @@ public class SocialNetworkServer {
             logger.severe("Error initializing folder structure: " + e.getMessage());
         }
     }
-    public void addNotification(Notification notification) {
+    public boolean addNotification(Notification notification) {
         String receiverID = notification.getReceiverID();
         logger.info("Adding notification from " + notification.getSenderID() +
                 " to " + receiverID + " of type " + notification.getType() +
                 ": " + notification.getContent());
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(receiverID)) {
-                clientNotifications.put(receiverID, new ArrayList<>());
-                logger.info("Created new notification list for client " + receiverID);
+        if (NotificationCoalescer.isCoalesced(notification)) {
+            Notification merged = notificationCoalescer.merge(notification, notificationStore);
+            if (merged != null) {
+                notificationJournal.recordRepeat(merged);
+                logger.info("Coalesced notification for client " + receiverID + ": " + merged.toString());
+                return true;
             }
-            clientNotifications.get(receiverID).add(notification);
-            logger.info("Client " + receiverID + " now has " +
-                    clientNotifications.get(receiverID).size() + " notifications");
         }
-        logger.info("Added notification for client " + receiverID + ": " + notification.toString());
-    }
-    public List<Notification> getClientNotifications(String clientID) {
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(clientID)) {
-                return new ArrayList<>();
-            }
-            List<Notification> activeNotifications = new ArrayList<>();
-            for (Notification notification : clientNotifications.get(clientID)) {
-                if (!notification.isRead() ||
-                        ((notification.getType().equals("follow_request") ||
-                                notification.getType().equals("photo_request")) &&
-                                notification.getStatus().equals("pending"))) {
-                    activeNotifications.add(notification);
-                }
-            }
-            return activeNotifications;
+        if (notification.isPendingRequest() && !pendingRequests.reserve(notification)) {
+            logger.info("Dropped duplicate or over-limit request from " + notification.getSenderID() +
+                    " to " + receiverID + " of type " + notification.getType());
+            return false;
         }
-    }
-    public List<Notification> getPendingFollowRequests(String clientID) {
-        List<Notification> pendingRequests = new ArrayList<>();
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(clientID)) {
-                return pendingRequests;
-            }
-            for (Notification notification : clientNotifications.get(clientID)) {
-                if (notification.getType().equals("follow_request") &&
-                        notification.getStatus().equals("pending")) {
-                    pendingRequests.add(notification);
-                }
+        notification.setId(nextNotificationId.getAndIncrement());
+        notificationJournal.recordAdded(notification);
+        Notification stored = notificationStore.add(notification);
+        pendingRequests.add(stored);
+        notificationCoalescer.remember(stored);
+        Set<NotificationSubscriber> subscribers = notificationSubscribers.get(receiverID);
+        if (subscribers != null) {
+            for (NotificationSubscriber subscriber : subscribers) {
+                subscriber.offer(stored);
             }
         }
-        return pendingRequests;
+        logger.info("Added notification for client " + receiverID + ": " + stored.toString());
+        return true;
     }
-    public List<Notification> getPendingPhotoRequests(String clientID) {
-        List<Notification> pendingRequests = new ArrayList<>();
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(clientID)) {
-                return pendingRequests;
-            }
-            for (Notification notification : clientNotifications.get(clientID)) {
-                if (notification.getType().equals("photo_request") &&
-                        notification.getStatus().equals("pending")) {
-                    pendingRequests.add(notification);
-                }
-            }
+    NotificationSubscriber subscribeNotifications(String clientID, FrameWriter frameOut) {
+        NotificationSubscriber subscriber = new NotificationSubscriber(clientID, frameOut, this,
+                notificationPusher, PUSH_QUEUE_CAPACITY);
+        notificationSubscribers.computeIfAbsent(clientID, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        logger.info("Client " + clientID + " subscribed to notification push");
+        return subscriber;
+    }
+    void unsubscribeNotifications(NotificationSubscriber subscriber) {
+        subscriber.close();
+        notificationSubscribers.computeIfPresent(subscriber.getClientID(), (id, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+    public void markNotificationRead(Notification notification) {
+        if (notificationStore.markRead(notification)) {
+            notificationJournal.recordRead(notification);
         }
-        return pendingRequests;
     }
-    public void updateFollowRequestStatus(String senderID, String receiverID, String status) {
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(receiverID)) {
-                return;
-            }
-            for (Notification notification : clientNotifications.get(receiverID)) {
-                if (notification.getType().equals("follow_request") &&
-                        notification.getSenderID().equals(senderID) &&
-                        notification.getStatus().equals("pending")) {
-                    notification.setStatus(status);
-                    logger.info("Updated follow request status from " + senderID +
-                            " to " + receiverID + ": " + status);
-                    return;
-                }
-            }
+    void forEachNotification(Consumer<Notification> action) {
+        notificationStore.forEach(action);
+    }
+    public List<Notification> getClientNotifications(String clientID) {
+        return notificationStore.getActive(clientID);
+    }
+    public List<Notification> getNotificationPage(String clientID, long since, int limit) {
+        return notificationStore.getPage(clientID, since, limit);
+    }
+    public int acknowledgeNotifications(String clientID, long cursor) {
+        List<Notification> acknowledged = notificationStore.acknowledge(clientID, cursor);
+        for (Notification notification : acknowledged) {
+            notificationJournal.recordRead(notification);
         }
+        return acknowledged.size();
     }
-    public void updatePhotoRequestStatus(String senderID, String receiverID, String fileName, String status) {
-        synchronized (clientNotifications) {
-            if (!clientNotifications.containsKey(receiverID)) {
-                return;
-            }
-            for (Notification notification : clientNotifications.get(receiverID)) {
-                if (notification.getType().equals("photo_request") &&
-                        notification.getSenderID().equals(senderID) &&
-                        notification.getContent().contains(fileName) &&
-                        notification.getStatus().equals("pending")) {
-                    notification.setStatus(status);
-                    return;
-                }
-            }
+    public boolean updateFollowRequestStatus(String senderID, String receiverID, NotificationStatus status) {
+        if (!resolvePendingRequest(receiverID, senderID, NotificationType.FOLLOW_REQUEST, "", status)) {
+            return false;
         }
+        logger.info("Updated follow request status from " + senderID +
+                " to " + receiverID + ": " + status.getWireName());
+        return true;
     }
-    private void initializeSocialGraphFile() {
-        try {
-            String workingDir = System.getProperty("user.dir");
-            Path socialGraphPath = Paths.get(DATA_FOLDER, SOCIAL_GRAPH_FILENAME);
-            if (!Files.exists(socialGraphPath)) {
-                Files.createFile(socialGraphPath);
-                logger.info("Created social graph file: " + socialGraphPath.toAbsolutePath());
-            }
-        } catch (IOException e) {
-            logger.severe("Error initializing social graph file: " + e.getMessage());
+    public boolean updatePhotoRequestStatus(String senderID, String receiverID, String fileName, NotificationStatus status) {
+        return resolvePendingRequest(receiverID, senderID, NotificationType.PHOTO_REQUEST, fileName, status);
+    }
+    private boolean resolvePendingRequest(String receiverID, String senderID, NotificationType kind, String subject,
+                                          NotificationStatus status) {
+        List<Notification> requests = pendingRequests.remove(receiverID, senderID, kind, subject);
+        if (requests == null) {
+            return false;
         }
+        for (Notification request : requests) {
+            notificationStore.updateStatus(request, status);
+            notificationJournal.recordStatus(request);
+        }
+        return true;
     }
     public void start() {
         try {
             initializeFolderStructure();
-            initializeSocialGraphFile();
+            socialGraph = SocialGraphIndex.open(Paths.get(DATA_FOLDER), graphCompactor);
+            photoPermissions = PhotoPermissionStore.open(Paths.get(DATA_FOLDER), socialGraph::isFollowing, scheduler, metrics);
+            restoreNotifications();
+            metrics.startReporting(scheduler, METRICS_REPORT_SECONDS);
+            long pruneMinutes = Math.max(1, notificationCoalescer.getWindow().toMinutes());
+            scheduler.scheduleAtFixedRate(notificationCoalescer::prune, pruneMinutes, pruneMinutes, TimeUnit.MINUTES);
+            if (executionMode == ExecutionMode.SELECTOR) {
+                startSelectorFrontEnd();
+                return;
+            }
             serverSocket = new ServerSocket(port, 50, InetAddress.getByName("0.0.0.0"));
             running = true;
-            logger.info("Server started on port " + port + " and is accessible from all network interfaces");
+            logger.info("Server started on port " + port + " in " + executionMode + " mode and is accessible from all network interfaces");
             while (running) {
                 try {
                     Socket clientSocket = serverSocket.accept();
@@ -171,21 +273,56 @@ public class SocialNetworkServer {
             shutdown();
         }
     }
-    private void handleNewClient(Socket clientSocket) {
-        if (clientCatalog.size() >= MAX_THREADS) {
+    private void restoreNotifications() throws IOException {
+        List<Notification> restored = notificationJournal.replay();
+        for (Notification notification : restored) {
+            Notification stored = notificationStore.add(notification);
+            pendingRequests.add(stored);
+            notificationCoalescer.remember(stored);
+        }
+        nextNotificationId.set(notificationJournal.getHighWaterId() + 1);
+        notificationJournal.start();
+    }
+    private void startSelectorFrontEnd() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getByName("0.0.0.0"), port), 50);
+        selectorFrontEnd = new SelectorFrontEnd(this, threadPool);
+        selectorFrontEnd.start();
+        running = true;
+        logger.info("Server started on port " + port + " in selector mode and is accessible from all network interfaces");
+        while (running) {
             try {
-                PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-                out.println("Server is at maximum capacity. Please try again later.");
-                clientSocket.close();
-                logger.warning("Rejected client connection due to maximum capacity");
+                SocketChannel channel = serverChannel.accept();
+                handleNewChannel(channel);
             } catch (IOException e) {
-                logger.severe("Error rejecting client: " + e.getMessage());
+                if (running) {
+                    logger.severe("Error accepting client connection: " + e.getMessage());
+                }
             }
-            return;
         }
-        threadPool.submit(new ClientHandler(clientSocket, this));
+    }
+    private void handleNewChannel(SocketChannel channel) {
+        Socket clientSocket = channel.socket();
+        logger.info("New client connection accepted from " +
+                clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort());
+        admissionQueue.submit(clientSocket, () -> selectorFrontEnd.register(channel));
+    }
+    private void handleNewClient(Socket clientSocket) {
         logger.info("New client connection accepted from " +
                 clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort());
+        admissionQueue.submit(clientSocket, () -> threadPool.submit(new ClientHandler(clientSocket, this)));
+    }
+    void sessionClosed() {
+        admissionQueue.release();
+    }
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+    SocialGraphIndex getSocialGraph() {
+        return socialGraph;
+    }
+    FanOutExecutor getFanOut() {
+        return fanOut;
     }
     public void shutdown() {
         running = false;
@@ -196,6 +333,17 @@ public class SocialNetworkServer {
                 logger.severe("Error closing server socket: " + e.getMessage());
             }
         }
+        if (serverChannel != null && serverChannel.isOpen()) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                logger.severe("Error closing server channel: " + e.getMessage());
+            }
+        }
+        if (selectorFrontEnd != null) {
+            selectorFrontEnd.shutdown();
+        }
+        scheduler.shutdownNow();
         if (threadPool != null && !threadPool.isShutdown()) {
             threadPool.shutdown();
             try {
@@ -206,6 +354,17 @@ public class SocialNetworkServer {
                 threadPool.shutdownNow();
             }
         }
+        fanOut.shutdown();
+        notificationPusher.shutdown();
+        notificationJournal.close();
+        notificationStore.close();
+        graphCompactor.shutdown();
+        if (socialGraph != null) {
+            socialGraph.close();
+        }
+        if (photoPermissions != null) {
+            photoPermissions.close();
+        }
         logger.info("Server has been shut down");
     }
     void updateClientCatalog(String clientID, InetAddress ipAddress, int port) {
@@ -225,28 +384,43 @@ public class SocialNetworkServer {
             return new HashMap<>(clientCatalog);
         }
     }
-    void grantPhotoAccess(String ownerID, String requesterID, String fileName) {
-        String key = ownerID + ":" + fileName;
-        photoPermissions.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(requesterID);
+    Duration getPhotoGrantTtl() {
+        return Duration.ofMinutes(PHOTO_GRANT_TTL_MINUTES);
     }
-    boolean hasPhotoAccess(String ownerID, String requesterID, String fileName) {
-        String key = ownerID + ":" + fileName;
-        Set<String> allowed = photoPermissions.get(key);
-        return allowed != null && allowed.contains(requesterID);
-    }
-    void revokePhotoAccess(String ownerID, String requesterID, String fileName) {
-        String key = ownerID + ":" + fileName;
-        Set<String> allowed = photoPermissions.get(key);
-        if (allowed != null) {
-            allowed.remove(requesterID);
-            if (allowed.isEmpty()) {
-                photoPermissions.remove(key);
-            }
+    void grantPhotoAccess(String ownerID, String requesterID, String fileName, Duration ttl) {
+        photoPermissions.grant(ownerID, requesterID, fileName, ttl.toMillis());
+        logger.info("Granted " + requesterID + " access to " + describePhotos(ownerID, fileName) +
+                " for " + ttl.toMinutes() + " minutes");
+    }
+    void grantFollowersPhotoAccess(String ownerID, String fileName, Duration ttl) {
+        photoPermissions.grantFollowers(ownerID, fileName, ttl.toMillis());
+        logger.info("Granted followers of " + ownerID + " access to " + describePhotos(ownerID, fileName) +
+                " for " + ttl.toMinutes() + " minutes");
+    }
+    List<String> grantGroupPhotoAccess(String ownerID, String groupName, String fileName, Duration ttl) {
+        List<String> members = photoPermissions.grantGroup(ownerID, groupName, fileName, ttl.toMillis());
+        if (members != null) {
+            logger.info("Granted " + members.size() + " members of group " + groupName + " access to " +
+                    describePhotos(ownerID, fileName) + " for " + ttl.toMinutes() + " minutes");
         }
+        return members;
+    }
+    int addPhotoGroupMember(String ownerID, String groupName, String memberID) {
+        return photoPermissions.addToGroup(ownerID, groupName, memberID);
+    }
+    boolean removePhotoGroupMember(String ownerID, String groupName, String memberID) {
+        return photoPermissions.removeFromGroup(ownerID, groupName, memberID);
+    }
+    private static String describePhotos(String ownerID, String fileName) {
+        return fileName == null ? "all photos of " + ownerID : ownerID + "/" + fileName;
+    }
+    boolean hasPhotoAccess(String ownerID, String requesterID, String fileName) {
+        return photoPermissions.hasAccess(ownerID, requesterID, fileName);
     }
     public static void main(String[] args) {
         LoggingConfig.configureLogging();
         int port = 8000; 
+        ExecutionMode mode = ExecutionMode.THREAD_POOL;
         if (args.length > 0) {
             try {
                 port = Integer.parseInt(args[0]);
@@ -254,7 +428,14 @@ public class SocialNetworkServer {
                 System.err.println("Invalid port number. Using default port 8000.");
             }
         }
-        SocialNetworkServer server = new SocialNetworkServer(port);
+        if (args.length > 1) {
+            try {
+                mode = ExecutionMode.fromArgument(args[1]);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage() + ". Using " + mode + " mode.");
+            }
+        }
+        SocialNetworkServer server = new SocialNetworkServer(port, mode);
         server.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package server;
+import java.util.Arrays;
+// Interns user ids to dense ints so the social graph can be kept in primitive arrays.
+class UserIdTable {
+    private String[] names = new String[1024];
+    private int[] slots = new int[2048];
+    private int size;
+    int size() {
+        return size;
+    }
+    String name(int id) {
+        return names[id];
+    }
+    int find(String name) {
+        int mask = slots.length - 1;
+        for (int slot = spread(name.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (names[slots[slot] - 1].equals(name)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+    int intern(String name) {
+        int mask = slots.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (names[slots[slot] - 1].equals(name)) {
+                return slots[slot] - 1;
+            }
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(names[id].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        slots = table;
+    }
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
\ No newline at end of file